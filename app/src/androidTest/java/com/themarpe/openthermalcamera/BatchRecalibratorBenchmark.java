@@ -0,0 +1,44 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recalibration throughput of a recorded sequence, on one thread and on all cores.
+ * Timings are logged only, they depend on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchRecalibratorBenchmark {
+
+    private static final String TAG = "BatchRecalibratorBench";
+
+    private static final int FRAMES = 2000;
+
+    @Test
+    public void throughput(){
+        SyntheticSensor sensor = new SyntheticSensor(8);
+        List<int[]> frames = new ArrayList<>(FRAMES);
+        for(int i = 0; i < FRAMES; i++){
+            double[] scene = SyntheticSensor.createScene(15 + (i % 10), 60 + (i % 20), i % 5);
+            frames.add(sensor.createFrame(scene, i & 1, true, 25 + i * 0.001, 0.95, 17));
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for(int parallelism : new int[]{1, cores}){
+            BatchRecalibrator recalibrator = new BatchRecalibrator(sensor.params);
+            recalibrator.setParallelism(parallelism);
+            //warm up
+            recalibrator.recalibrate(frames);
+            BatchRecalibrator.Result result = recalibrator.recalibrate(frames);
+            Log.i(TAG, parallelism + " threads: " + (long) result.getFramesPerSecond() + " frames/s");
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * CalculateTo time per frame with exact roots and with the fast fourth root for several
+ * accuracy targets, and the worst case error of each over the sensor's -40..300 C range.
+ * Results are logged only, the gain depends on the device's double sqrt.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FastMathBenchmark {
+
+    private static final String TAG = "FastMathBench";
+
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int MEASURED_FRAMES = 5000;
+
+    private static final double[] TARGETS = {0.1, 0.01, 0.001};
+
+    @Test
+    public void fourthRootErrorOverSensorRange(){
+        for(int iterations = 0; iterations <= FastMath.MAX_ITERATIONS; iterations++){
+            double maxError = 0;
+            for(double t = OTC.MLX_MIN_TEMP; t <= OTC.MLX_MAX_TEMP; t += 0.01){
+                double kelvin = t + 273.15;
+                double x = FastMath.fourthPower(kelvin);
+                maxError = Math.max(maxError, Math.abs(FastMath.fourthRoot(x, iterations) - kelvin));
+            }
+            Log.i(TAG, "fourthRoot, " + iterations + " iterations: worst case error " + maxError + " C");
+        }
+    }
+
+    @Test
+    public void calculateToTimePerFrame(){
+        SyntheticSensor sensor = new SyntheticSensor(5);
+        int[][][] frames = new int[4][][];
+        for(int scene = 0; scene < frames.length; scene++){
+            //scenes together cover the whole sensor range
+            double[] temperatures = SyntheticSensor.createScene(OTC.MLX_MIN_TEMP, OTC.MLX_MAX_TEMP - scene * 50, scene);
+            frames[scene] = new int[][]{
+                    sensor.createFrame(temperatures, 0, true, 25, 0.95, 17),
+                    sensor.createFrame(temperatures, 1, true, 25, 0.95, 17)
+            };
+        }
+
+        MLX90640 exact = new MLX90640();
+        timePerFrame(exact, sensor.params, frames, WARMUP_FRAMES);
+        double exactNs = timePerFrame(exact, sensor.params, frames, MEASURED_FRAMES);
+        Log.i(TAG, "CalculateTo exact: " + (long) exactNs + " ns per frame");
+
+        double[] expected = new double[768];
+        double[] actual = new double[768];
+        for(double target : TARGETS){
+            MLX90640 fast = new MLX90640();
+            fast.setFastMath(target);
+            timePerFrame(fast, sensor.params, frames, WARMUP_FRAMES);
+            double fastNs = timePerFrame(fast, sensor.params, frames, MEASURED_FRAMES);
+
+            double maxError = 0;
+            for(int[][] scene : frames){
+                for(int subPage = 0; subPage < 2; subPage++){
+                    exact.CalculateTo(scene[subPage], sensor.params, 0.95, 17, expected);
+                    fast.CalculateTo(scene[subPage], sensor.params, 0.95, 17, actual);
+                    for(int pixel : MLX90640.SUBPAGE_PIXELS[1][subPage]){
+                        maxError = Math.max(maxError, Math.abs(expected[pixel] - actual[pixel]));
+                    }
+                }
+            }
+
+            Log.i(TAG, "CalculateTo fast math, target " + target + " C: " + (long) fastNs + " ns per frame (speedup "
+                    + String.format("%.2f", exactNs / fastNs) + "x), worst case error " + maxError + " C");
+        }
+    }
+
+    private static double timePerFrame(MLX90640 mlx, MLX90640.Params params, int[][][] frames, int count){
+        double[] result = new double[768];
+        long start = System.nanoTime();
+        for(int i = 0; i < count; i++){
+            int[][] scene = frames[(i >> 1) % frames.length];
+            mlx.CalculateTo(scene[i & 1], params, 0.95, 17, result);
+        }
+        return (System.nanoTime() - start) / (double) count;
+    }
+
+}
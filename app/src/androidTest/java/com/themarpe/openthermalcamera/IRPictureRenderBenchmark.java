@@ -0,0 +1,146 @@
+package com.themarpe.openthermalcamera;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.themarpe.openthermalcamera.Palette.ThermalPalette;
+import com.themarpe.openthermalcamera.Palette.WhiteHotPalette;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the per-frame render cost of the original per-pixel path (palette color computed
+ * per pixel, Bitmap.setPixel for picture and spectrum) with the lookup table + setPixels path
+ * used by IRPicture. Needs a device, since both paths end up in native Bitmap code.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IRPictureRenderBenchmark {
+
+    private static final String TAG = "IRPictureRenderBench";
+
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 2000;
+    private static final int SPECTRUM_RESOLUTION = IRPicture.getSpectrumResolution();
+
+    private static final double MIN = 5.0, MAX = 35.0;
+
+    private final ThermalPalette palette = new WhiteHotPalette();
+
+    private double[][] createScene(int frame){
+        double[][] scene = new double[OTC.IR_HEIGHT][OTC.IR_WIDTH];
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            for(int x = 0; x < OTC.IR_WIDTH; x++){
+                scene[y][x] = 20.0 + 15.0 * Math.sin((x + frame) * 0.2) * Math.cos(y * 0.3);
+            }
+        }
+        return scene;
+    }
+
+    //WhiteHotPalette.temperatureToColor before the lookup table
+    private static int legacyColor(double temperature, double minTemperature, double maxTemperature){
+        double tempPercent = (temperature - minTemperature) / (maxTemperature - minTemperature);
+        if(tempPercent > 1.0) tempPercent = 1.0;
+        else if(tempPercent < 0.0) tempPercent = 0.0;
+        int whiteLevel = (int) Math.round(tempPercent * 255);
+        return 0xFF000000 | whiteLevel << 16 | whiteLevel << 8 | whiteLevel;
+    }
+
+    //IRPicture.updateTemperatureData before bulk rendering, with a custom range
+    private void renderLegacy(double[][] scene, Bitmap ir, Bitmap spectrum){
+        double minTemp = scene[0][0], maxTemp = scene[0][0];
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            for(int x = 0; x < OTC.IR_WIDTH; x++){
+                minTemp = Math.min(minTemp, scene[y][x]);
+                maxTemp = Math.max(maxTemp, scene[y][x]);
+            }
+        }
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            for(int x = 0; x < OTC.IR_WIDTH; x++){
+                ir.setPixel(x, y, legacyColor(scene[y][x], MIN, MAX));
+            }
+        }
+        for(int i = 0; i < SPECTRUM_RESOLUTION; i++){
+            double curTemp = minTemp + (maxTemp - minTemp) * (i / (double) SPECTRUM_RESOLUTION);
+            spectrum.setPixel(i, 0, legacyColor(curTemp, MIN, MAX));
+        }
+    }
+
+    private void renderBulk(IRPicture picture, double[][] scene, Bitmap spectrum){
+        picture.updateTemperatureData(scene);
+        picture.copySpectrumTo(spectrum);
+    }
+
+    private IRPicture createPicture(){
+        IRPicture picture = new IRPicture(OTC.IR_WIDTH, OTC.IR_HEIGHT, palette);
+        picture.setCustomTemperatureRange(true);
+        picture.setCustomMinTemperature(MIN);
+        picture.setCustomMaxTemperature(MAX);
+        return picture;
+    }
+
+    //lookup table has 1024 entries, gray levels may differ by one step
+    private static void assertSameGray(int expected, int actual){
+        assertTrue(Math.abs((expected & 0xFF) - (actual & 0xFF)) <= 1);
+        assertTrue(actual == (0xFF000000 | (actual & 0xFF) * 0x010101));
+    }
+
+    @Test
+    public void legacyAndBulkRenderMatch(){
+        double[][] scene = createScene(0);
+
+        Bitmap legacyIr = Bitmap.createBitmap(OTC.IR_WIDTH, OTC.IR_HEIGHT, Bitmap.Config.ARGB_8888);
+        Bitmap legacySpectrum = Bitmap.createBitmap(SPECTRUM_RESOLUTION, 1, Bitmap.Config.ARGB_8888);
+        renderLegacy(scene, legacyIr, legacySpectrum);
+
+        IRPicture picture = createPicture();
+        Bitmap spectrum = Bitmap.createBitmap(SPECTRUM_RESOLUTION, 1, Bitmap.Config.ARGB_8888);
+        renderBulk(picture, scene, spectrum);
+
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            for(int x = 0; x < OTC.IR_WIDTH; x++){
+                assertSameGray(legacyIr.getPixel(x, y), picture.getBitmap().getPixel(x, y));
+            }
+        }
+        for(int i = 0; i < SPECTRUM_RESOLUTION; i++){
+            assertSameGray(legacySpectrum.getPixel(i, 0), spectrum.getPixel(i, 0));
+        }
+    }
+
+    @Test
+    public void renderCostPerFrame(){
+        Bitmap ir = Bitmap.createBitmap(OTC.IR_WIDTH, OTC.IR_HEIGHT, Bitmap.Config.ARGB_8888);
+        Bitmap spectrum = Bitmap.createBitmap(SPECTRUM_RESOLUTION, 1, Bitmap.Config.ARGB_8888);
+        IRPicture picture = createPicture();
+
+        double[][][] scenes = new double[16][][];
+        for(int i = 0; i < scenes.length; i++){
+            scenes[i] = createScene(i);
+        }
+
+        for(int i = 0; i < WARMUP_FRAMES; i++){
+            renderLegacy(scenes[i % scenes.length], ir, spectrum);
+            renderBulk(picture, scenes[i % scenes.length], spectrum);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < MEASURED_FRAMES; i++){
+            renderLegacy(scenes[i % scenes.length], ir, spectrum);
+        }
+        long legacyNanos = (System.nanoTime() - start) / MEASURED_FRAMES;
+
+        //spectrum is drawn every frame here, FrameRenderer only draws it when it changed
+        start = System.nanoTime();
+        for(int i = 0; i < MEASURED_FRAMES; i++){
+            renderBulk(picture, scenes[i % scenes.length], spectrum);
+        }
+        long bulkNanos = (System.nanoTime() - start) / MEASURED_FRAMES;
+
+        Log.i(TAG, "setPixel loop: " + legacyNanos / 1000.0 + " us/frame, setPixels: " + bulkNanos / 1000.0 + " us/frame");
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * MLX90640.CalculateTo time per frame with the cached coefficients interleaved into
+ * per pixel records and stored as separate arrays, in double and single precision.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PixelLayoutBenchmark {
+
+    private static final String TAG = "PixelLayoutBench";
+
+    private static final int WARMUP_FRAMES = 5000;
+    private static final int MEASURED_FRAMES = 20000;
+
+    @Test
+    public void calculateToTimePerFrame(){
+        SyntheticSensor sensor = new SyntheticSensor(10);
+        double[] temperatures = SyntheticSensor.createScene(20, 150, 2);
+        int[][] frames = {
+                sensor.createFrame(temperatures, 0, true, 25, 0.95, 17),
+                sensor.createFrame(temperatures, 1, true, 25, 0.95, 17)
+        };
+
+        for(boolean singlePrecision : new boolean[]{false, true}){
+            MLX90640 interleaved = new MLX90640();
+            interleaved.setSinglePrecision(singlePrecision);
+            MLX90640 separate = new MLX90640();
+            separate.setSinglePrecision(singlePrecision);
+            separate.setInterleavedCoefficients(false);
+
+            //warm up both before measuring, so neither runs with a profile of the other
+            timePerFrame(interleaved, sensor.params, frames, WARMUP_FRAMES);
+            timePerFrame(separate, sensor.params, frames, WARMUP_FRAMES);
+
+            double interleavedNs = timePerFrame(interleaved, sensor.params, frames, MEASURED_FRAMES);
+            double separateNs = timePerFrame(separate, sensor.params, frames, MEASURED_FRAMES);
+            Log.i(TAG, (singlePrecision ? "single" : "double") + " precision CalculateTo: interleaved " + (long) interleavedNs
+                    + " ns, separate " + (long) separateNs + " ns per frame");
+        }
+    }
+
+    private static double timePerFrame(MLX90640 mlx, MLX90640.Params params, int[][] frames, int count){
+        MLX90640.FrameContext[] contexts = { new MLX90640.FrameContext(), new MLX90640.FrameContext() };
+        mlx.GetFrameContext(frames[0], params, contexts[0]);
+        mlx.GetFrameContext(frames[1], params, contexts[1]);
+        double[] result = new double[768];
+        long start = System.nanoTime();
+        for(int i = 0; i < count; i++){
+            mlx.CalculateTo(frames[i & 1], params, contexts[i & 1], 0.95, 17, result);
+        }
+        return (System.nanoTime() - start) / (double) count;
+    }
+
+}
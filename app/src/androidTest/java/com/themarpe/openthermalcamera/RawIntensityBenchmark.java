@@ -0,0 +1,56 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Time per frame of GetImage (RAW_INTENSITY pipeline) compared to CalculateTo (RADIOMETRIC).
+ */
+@RunWith(AndroidJUnit4.class)
+public class RawIntensityBenchmark {
+
+    private static final String TAG = "RawIntensityBench";
+
+    private static final int WARMUP_FRAMES = 5000;
+    private static final int MEASURED_FRAMES = 20000;
+
+    @Test
+    public void timePerFrame(){
+        SyntheticSensor sensor = new SyntheticSensor(10);
+        double[] temperatures = SyntheticSensor.createScene(20, 150, 2);
+        int[][] frames = {
+                sensor.createFrame(temperatures, 0, true, 25, 0.95, 17),
+                sensor.createFrame(temperatures, 1, true, 25, 0.95, 17)
+        };
+        MLX90640 mlx = new MLX90640();
+        MLX90640.FrameContext[] contexts = { new MLX90640.FrameContext(), new MLX90640.FrameContext() };
+        mlx.GetFrameContext(frames[0], sensor.params, contexts[0]);
+        mlx.GetFrameContext(frames[1], sensor.params, contexts[1]);
+        double[] result = new double[768];
+
+        //warm up both
+        for(int i = 0; i < WARMUP_FRAMES; i++){
+            mlx.CalculateTo(frames[i & 1], sensor.params, contexts[i & 1], 0.95, 17, result);
+            mlx.GetImage(frames[i & 1], sensor.params, contexts[i & 1], result);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < MEASURED_FRAMES; i++){
+            mlx.CalculateTo(frames[i & 1], sensor.params, contexts[i & 1], 0.95, 17, result);
+        }
+        long radiometricNs = (System.nanoTime() - start) / MEASURED_FRAMES;
+
+        start = System.nanoTime();
+        for(int i = 0; i < MEASURED_FRAMES; i++){
+            mlx.GetImage(frames[i & 1], sensor.params, contexts[i & 1], result);
+        }
+        long rawNs = (System.nanoTime() - start) / MEASURED_FRAMES;
+
+        Log.i(TAG, "per frame: CalculateTo " + radiometricNs + " ns, GetImage " + rawNs + " ns");
+    }
+
+}
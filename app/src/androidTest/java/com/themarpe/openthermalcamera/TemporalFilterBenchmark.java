@@ -0,0 +1,46 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cost of filtering one subpage, compared to the frame interval at 64 Hz.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TemporalFilterBenchmark {
+
+    private static final String TAG = "TemporalFilterBench";
+
+    //one frame at 64 Hz
+    private static final double FRAME_BUDGET_NS = 1e9 / 64;
+
+    private static final int FRAMES = 100000;
+
+    @Test
+    public void costPerFrame(){
+        TemporalFilter filter = new TemporalFilter(768);
+        double[] data = new double[768];
+        Random random = new Random(2);
+        for(int i = 0; i < 768; i++) data[i] = 20 + random.nextDouble();
+
+        for(int i = 0; i < FRAMES; i++){
+            filter.apply(data, MLX90640.SUBPAGE_PIXELS[1][i & 1]);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < FRAMES; i++){
+            filter.apply(data, MLX90640.SUBPAGE_PIXELS[1][i & 1]);
+        }
+        double ns = (System.nanoTime() - start) / (double) FRAMES;
+        Log.i(TAG, (long) ns + " ns per frame (" + String.format("%.3f", 100 * ns / FRAME_BUDGET_NS) + " % of 64 Hz frame)");
+        assertTrue(ns < FRAME_BUDGET_NS);
+    }
+
+}
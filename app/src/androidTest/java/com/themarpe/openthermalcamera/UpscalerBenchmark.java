@@ -0,0 +1,69 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.themarpe.openthermalcamera.Palette.RainbowPalette;
+import com.themarpe.openthermalcamera.Palette.ThermalPalette;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upscaling and coloring cost per frame, for each mode, factor and thread count,
+ * compared to the frame interval at HZ_16.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UpscalerBenchmark {
+
+    private static final String TAG = "UpscalerBench";
+
+    //one frame at HZ_16
+    private static final double FRAME_BUDGET_NS = 1e9 / 16;
+
+    private static final int FRAMES = 200;
+
+    private double[][] createScene(int frame){
+        double[][] scene = new double[OTC.IR_HEIGHT][OTC.IR_WIDTH];
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            for(int x = 0; x < OTC.IR_WIDTH; x++){
+                scene[y][x] = 20.0 + 10.0 * Math.sin((x + frame) * 0.3) * Math.cos(y * 0.2);
+            }
+        }
+        return scene;
+    }
+
+    @Test
+    public void costPerFrame(){
+        double[][][] scenes = new double[8][][];
+        for(int i = 0; i < scenes.length; i++) scenes[i] = createScene(i);
+        ThermalPalette palette = new RainbowPalette();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for(Upscaler.Mode mode : new Upscaler.Mode[]{Upscaler.Mode.BILINEAR, Upscaler.Mode.BICUBIC}){
+            for(int factor : new int[]{8, 16}){
+                for(int parallelism : new int[]{1, cores}){
+                    Upscaler upscaler = new Upscaler(mode, factor, OTC.IR_WIDTH, OTC.IR_HEIGHT);
+                    upscaler.setParallelism(parallelism);
+                    int[] colors = new int[upscaler.getOutputWidth() * upscaler.getOutputHeight()];
+
+                    for(int i = 0; i < FRAMES; i++){
+                        upscaler.render(scenes[i % scenes.length], palette, 10, 30, colors);
+                    }
+                    long start = System.nanoTime();
+                    for(int i = 0; i < FRAMES; i++){
+                        upscaler.render(scenes[i % scenes.length], palette, 10, 30, colors);
+                    }
+                    double ns = (System.nanoTime() - start) / (double) FRAMES;
+                    Log.i(TAG, mode + " x" + factor + ", " + parallelism + " thread(s): " + String.format("%.3f", ns / 1e6) + " ms per frame ("
+                            + String.format("%.1f", 100 * ns / FRAME_BUDGET_NS) + " % of HZ_16 frame)");
+                    assertTrue(ns < FRAME_BUDGET_NS);
+                }
+            }
+        }
+    }
+
+}
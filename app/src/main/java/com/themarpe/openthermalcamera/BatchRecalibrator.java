@@ -0,0 +1,171 @@
+package com.themarpe.openthermalcamera;
+
+import android.annotation.SuppressLint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Recalculates temperatures of recorded raw frames (834 words each, as received with
+ * GET_FRAME_DATA), e.g. with a different emissivity or reflected temperature shift.
+ * Frames are calibrated in parallel on a fork-join pool, each worker with its own
+ * MLX90640 instance, as those cache per subpage coefficients. Every frame only contains
+ * one subpage, so complete images are assembled afterwards in recording order, taking
+ * the other subpage's pixels from the previous frame.
+ * ForkJoinPool is only available from API 21, on older devices frames are calculated
+ * sequentially.
+ */
+class BatchRecalibrator {
+
+    //frames per fork-join leaf task
+    private static final int FRAMES_PER_TASK = 4;
+
+    private static final boolean FORK_JOIN_AVAILABLE = isForkJoinAvailable();
+
+    static class Result {
+        //temperatures per frame in sensor pixel order,
+        //pixels of a subpage not measured yet (start of recording) are NaN
+        final double[][] temperatures;
+        final MLX90640.FrameContext[] contexts;
+        final long elapsedNanos;
+
+        Result(double[][] temperatures, MLX90640.FrameContext[] contexts, long elapsedNanos){
+            this.temperatures = temperatures;
+            this.contexts = contexts;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double getFramesPerSecond(){
+            return elapsedNanos > 0 ? temperatures.length * 1e9 / elapsedNanos : 0;
+        }
+    }
+
+    private final MLX90640.Params params;
+    private double emissivity = 0.9;
+    private double taShift = 8;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private final ThreadLocal<MLX90640> mlx = new ThreadLocal<MLX90640>(){
+        @Override
+        protected MLX90640 initialValue() {
+            //exact coefficients, so results don't depend on how frames are split between threads
+            MLX90640 mlxapi = new MLX90640();
+            mlxapi.setCoefficientTolerance(0, 0);
+            return mlxapi;
+        }
+    };
+
+    //params are only read, they must not be changed while recalibrating
+    BatchRecalibrator(MLX90640.Params params){
+        this.params = params;
+    }
+
+    void setEmissivity(double emissivity){
+        this.emissivity = emissivity;
+    }
+
+    //reflected temperature = Ta - taShift
+    void setTaShift(double taShift){
+        this.taShift = taShift;
+    }
+
+    //1 calculates on the calling thread
+    void setParallelism(int parallelism){
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    Result recalibrate(List<int[]> frames){
+        long start = System.nanoTime();
+
+        double[][] temperatures = new double[frames.size()][OTC.IR_WIDTH * OTC.IR_HEIGHT];
+        MLX90640.FrameContext[] contexts = new MLX90640.FrameContext[frames.size()];
+
+        if(FORK_JOIN_AVAILABLE && parallelism > 1 && frames.size() > FRAMES_PER_TASK){
+            calculateParallel(frames, temperatures, contexts);
+        } else {
+            calculate(frames, 0, frames.size(), temperatures, contexts);
+        }
+
+        mergeSubPages(params, temperatures, contexts);
+
+        return new Result(temperatures, contexts, System.nanoTime() - start);
+    }
+
+    private void calculate(List<int[]> frames, int from, int to, double[][] temperatures, MLX90640.FrameContext[] contexts){
+        MLX90640 mlxapi = mlx.get();
+        for(int i = from; i < to; i++){
+            int[] frameData = frames.get(i);
+            MLX90640.FrameContext context = new MLX90640.FrameContext();
+            mlxapi.GetFrameContext(frameData, params, context);
+            Arrays.fill(temperatures[i], Double.NaN);
+            mlxapi.CalculateTo(frameData, params, context, emissivity, context.ta - taShift, temperatures[i]);
+            contexts[i] = context;
+        }
+    }
+
+    @SuppressLint("NewApi")
+    private void calculateParallel(List<int[]> frames, double[][] temperatures, MLX90640.FrameContext[] contexts){
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CalculateTask(frames, 0, frames.size(), temperatures, contexts));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @SuppressLint("NewApi")
+    private class CalculateTask extends RecursiveAction {
+        private final List<int[]> frames;
+        private final int from, to;
+        private final double[][] temperatures;
+        private final MLX90640.FrameContext[] contexts;
+
+        CalculateTask(List<int[]> frames, int from, int to, double[][] temperatures, MLX90640.FrameContext[] contexts){
+            this.frames = frames;
+            this.from = from;
+            this.to = to;
+            this.temperatures = temperatures;
+            this.contexts = contexts;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= FRAMES_PER_TASK){
+                calculate(frames, from, to, temperatures, contexts);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new CalculateTask(frames, from, mid, temperatures, contexts),
+                    new CalculateTask(frames, mid, to, temperatures, contexts));
+        }
+    }
+
+    //fills pixels of the subpage a frame doesn't contain from the previous frame, then corrects
+    //bad pixels again, as in chess mode their neighbours are all in the other subpage
+    private static void mergeSubPages(MLX90640.Params params, double[][] temperatures, MLX90640.FrameContext[] contexts){
+        for(int i = 0; i < temperatures.length; i++){
+            MLX90640.FrameContext context = contexts[i];
+            if(i > 0 && (context.subPage == 0 || context.subPage == 1)){
+                int[] otherSubPage = MLX90640.SUBPAGE_PIXELS[context.mode == 0 ? 0 : 1][1 - context.subPage];
+                double[] previous = temperatures[i - 1];
+                double[] current = temperatures[i];
+                for(int pixel : otherSubPage){
+                    current[pixel] = previous[pixel];
+                }
+            }
+            MLX90640.CorrectBadPixels(params, context.mode, temperatures[i]);
+        }
+    }
+
+    private static boolean isForkJoinAvailable(){
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+            return true;
+        } catch (ClassNotFoundException e){
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * Stores extracted MLX90640 parameters in the app's files directory, so frames can be
+ * calibrated right after reconnecting, before the EEPROM dump arrives. Parameters are
+ * keyed by a CRC32 of the EEPROM contents, the dump is then only used to verify them.
+ * The file ends with a CRC32 of everything before it, so a damaged file is ignored.
+ */
+class CalibrationStore {
+
+    private static final String TAG = "CalibrationStore";
+
+    private static final String FILE_NAME = "mlx90640_params.bin";
+    private static final int MAGIC = 0x4F544350; //"OTCP"
+    //increase when Params layout changes
+    private static final int VERSION = 2;
+
+    static class Entry {
+        final long eeHash;
+        final MLX90640.Params params;
+
+        Entry(long eeHash, MLX90640.Params params){
+            this.eeHash = eeHash;
+            this.params = params;
+        }
+    }
+
+    private final File file;
+
+    CalibrationStore(File directory){
+        file = new File(directory, FILE_NAME);
+    }
+
+    static long hash(int[] eeData){
+        CRC32 crc = new CRC32();
+        for(int i = 0; i < 832; i++){
+            crc.update(eeData[i] >> 8);
+            crc.update(eeData[i]);
+        }
+        return crc.getValue();
+    }
+
+    //returns stored parameters, or null if there are none or they can't be read
+    Entry load(){
+        if(!file.exists()) return null;
+
+        CRC32 crc = new CRC32();
+        try(DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), crc))){
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                Log.w(TAG, "Stored parameters have unknown format, ignoring");
+                return null;
+            }
+            long eeHash = in.readLong();
+            MLX90640.Params params = new MLX90640.Params();
+            readParams(in, params);
+            //checksum of contents, before reading the stored one
+            long checksum = crc.getValue();
+            if(in.readLong() != checksum){
+                Log.w(TAG, "Stored parameters are damaged, ignoring");
+                return null;
+            }
+            MLX90640.BuildBadPixelCorrection(params);
+            return new Entry(eeHash, params);
+        } catch (IOException e){
+            Log.e(TAG, "Couldn't load stored parameters", e);
+            return null;
+        }
+    }
+
+    boolean save(long eeHash, MLX90640.Params params){
+        //write to temporary file first, so a crash doesn't leave a truncated file behind
+        File tmp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try(DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)), crc))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(eeHash);
+            writeParams(out, params);
+            out.writeLong(crc.getValue());
+        } catch (IOException e){
+            Log.e(TAG, "Couldn't store parameters", e);
+            tmp.delete();
+            return false;
+        }
+
+        if(!tmp.renameTo(file)){
+            Log.e(TAG, "Couldn't replace " + file);
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeParams(DataOutputStream out, MLX90640.Params p) throws IOException {
+        out.writeInt(p.kVdd);
+        out.writeInt(p.vdd25);
+        out.writeDouble(p.KvPTAT);
+        out.writeDouble(p.KtPTAT);
+        out.writeInt(p.vPTAT25);
+        out.writeDouble(p.alphaPTAT);
+        out.writeInt(p.gainEE);
+        out.writeDouble(p.tgc);
+        out.writeDouble(p.cpKv);
+        out.writeDouble(p.cpKta);
+        out.writeInt(p.resolutionEE);
+        out.writeInt(p.calibrationModeEE);
+        out.writeDouble(p.KsTa);
+        write(out, p.ksTo);
+        write(out, p.ct);
+        write(out, p.alpha);
+        write(out, p.offset);
+        write(out, p.kta);
+        write(out, p.kv);
+        write(out, p.cpAlpha);
+        write(out, p.cpOffset);
+        write(out, p.ilChessC);
+        write(out, p.brokenPixels);
+        write(out, p.outlierPixels);
+        write(out, p.alphaCorrR);
+    }
+
+    private static void readParams(DataInputStream in, MLX90640.Params p) throws IOException {
+        p.kVdd = in.readInt();
+        p.vdd25 = in.readInt();
+        p.KvPTAT = in.readDouble();
+        p.KtPTAT = in.readDouble();
+        p.vPTAT25 = in.readInt();
+        p.alphaPTAT = in.readDouble();
+        p.gainEE = in.readInt();
+        p.tgc = in.readDouble();
+        p.cpKv = in.readDouble();
+        p.cpKta = in.readDouble();
+        p.resolutionEE = in.readInt();
+        p.calibrationModeEE = in.readInt();
+        p.KsTa = in.readDouble();
+        read(in, p.ksTo);
+        read(in, p.ct);
+        read(in, p.alpha);
+        read(in, p.offset);
+        read(in, p.kta);
+        read(in, p.kv);
+        read(in, p.cpAlpha);
+        read(in, p.cpOffset);
+        read(in, p.ilChessC);
+        read(in, p.brokenPixels);
+        read(in, p.outlierPixels);
+        read(in, p.alphaCorrR);
+    }
+
+    private static void write(DataOutputStream out, double[] values) throws IOException {
+        for(double v : values) out.writeDouble(v);
+    }
+
+    private static void write(DataOutputStream out, int[] values) throws IOException {
+        for(int v : values) out.writeInt(v);
+    }
+
+    private static void read(DataInputStream in, double[] values) throws IOException {
+        for(int i = 0; i < values.length; i++) values[i] = in.readDouble();
+    }
+
+    private static void read(DataInputStream in, int[] values) throws IOException {
+        for(int i = 0; i < values.length; i++) values[i] = in.readInt();
+    }
+
+}
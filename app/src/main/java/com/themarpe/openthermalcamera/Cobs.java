@@ -215,4 +215,176 @@ public class Cobs {
 
 
 
+
+    /*
+     * byte[] variants of encode and decode.
+     * They work on a region of the given arrays and write the result to a caller owned result holder,
+     * so no arrays or result objects are allocated per message.
+     * decode may be called in place (dst == src, dstOffset == srcOffset), as the write position never
+     * overtakes the read position.
+     */
+
+    public static void encode(byte[] dst, int dstOffset, int dstLen, byte[] src, int srcOffset, int srcLen, EncodeResult result){
+        result.outLen = 0;
+        result.status = EncodeStatus.OK;
+
+        if(dst == null || src == null){
+            result.status = EncodeStatus.NULL_POINTER;
+            return;
+        }
+
+        int dst_write_counter = dstOffset + 1;
+        int dst_code_write_counter = dstOffset;
+        int dst_buf_end_counter = dstOffset + dstLen;
+
+        int src_ptr_counter = srcOffset;
+        int src_end_counter = srcOffset + srcLen;
+
+        int search_len = 1;
+
+        if (srcLen != 0)
+        {
+            /* Iterate over the source bytes */
+            for (;;)
+            {
+                /* Check for running out of output buffer space */
+                if (dst_write_counter >= dst_buf_end_counter)
+                {
+                    result.status = EncodeStatus.OUT_BUFFER_OVERFLOW;
+                    break;
+                }
+
+                byte src_byte = src[src_ptr_counter++];
+
+                if (src_byte == 0)
+                {
+                    /* We found a zero byte */
+                    dst[dst_code_write_counter] = (byte) search_len;
+                    dst_code_write_counter = dst_write_counter++;
+                    search_len = 1;
+                    if (src_ptr_counter >= src_end_counter)
+                    {
+                        break;
+                    }
+                }
+                else
+                {
+                    /* Copy the non-zero byte to the destination buffer */
+                    dst[dst_write_counter++] = src_byte;
+
+                    search_len++;
+                    if (src_ptr_counter >= src_end_counter)
+                    {
+                        break;
+                    }
+                    if (search_len == 0xFF)
+                    {
+                        /* We have a long string of non-zero bytes, so we need
+                         * to write out a length code of 0xFF. */
+                        dst[dst_code_write_counter] = (byte) search_len;
+
+                        dst_code_write_counter = dst_write_counter++;
+                        search_len = 1;
+                    }
+                }
+            }
+        }
+
+        if (dst_code_write_counter >= dst_buf_end_counter)
+        {
+            /* We've run out of output buffer to write the code byte. */
+            result.status = EncodeStatus.OUT_BUFFER_OVERFLOW;
+            dst_write_counter = dst_buf_end_counter;
+        }
+        else
+        {
+            /* Write the last code (length) byte. */
+            dst[dst_code_write_counter] = (byte) search_len;
+        }
+
+        result.outLen = dst_write_counter - dstOffset;
+    }
+
+
+
+    public static void decode(byte[] dst, int dstOffset, int dstLen, byte[] src, int srcOffset, int srcLen, DecodeResult result){
+        result.outLen = 0;
+        result.status = DecodeStatus.OK;
+
+        if ((dst == null) || (src == null))
+        {
+            result.status = DecodeStatus.NULL_POINTER;
+            return;
+        }
+
+        int src_ptr_counter = srcOffset;
+        int src_end_counter = srcOffset + srcLen;
+        int dst_buf_end_counter = dstOffset + dstLen;
+        int dst_write_counter = dstOffset;
+        int remaining_bytes;
+        byte src_byte;
+        int i;
+        int len_code;
+
+        if (srcLen != 0)
+        {
+            for (;;)
+            {
+                len_code = src[src_ptr_counter++] & 0xFF;
+                if (len_code == 0)
+                {
+                    result.status = DecodeStatus.ZERO_BYTE_IN_INPUT;
+                    break;
+                }
+                len_code--;
+
+                /* Check length code against remaining input bytes */
+                remaining_bytes = src_end_counter - src_ptr_counter;
+                if (len_code > remaining_bytes)
+                {
+                    result.status = DecodeStatus.INPUT_TOO_SHORT;
+                    len_code = remaining_bytes;
+                }
+
+                /* Check length code against remaining output buffer space */
+                remaining_bytes = dst_buf_end_counter - dst_write_counter;
+                if (len_code > remaining_bytes)
+                {
+                    result.status = DecodeStatus.OUT_BUFFER_OVERFLOW;
+                    len_code = remaining_bytes;
+                }
+
+                for (i = len_code; i != 0; i--)
+                {
+                    src_byte = src[src_ptr_counter++];
+                    if (src_byte == 0)
+                    {
+                        result.status = DecodeStatus.ZERO_BYTE_IN_INPUT;
+                    }
+
+                    dst[dst_write_counter++] = src_byte;
+                }
+
+                if (src_ptr_counter >= src_end_counter)
+                {
+                    break;
+                }
+
+                /* Add a zero to the end */
+                if (len_code != 0xFE)
+                {
+                    if (dst_write_counter >= dst_buf_end_counter)
+                    {
+                        result.status = DecodeStatus.OUT_BUFFER_OVERFLOW;
+                        break;
+                    }
+                    dst[dst_write_counter++] = 0;
+                }
+            }
+        }
+
+        result.outLen = dst_write_counter - dstOffset;
+    }
+
+
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.themarpe.openthermalcamera;
+
+/*
+ * Approximations for the To equation of MLX90640.CalculateTo.
+ * The fourth root starts from an exponent/mantissa bit estimate of x^(-1/4), which is
+ * refined with Newton iterations that need no division. Each iteration roughly squares
+ * the relative error, the error bound per iteration count is measured once at class load.
+ */
+final class FastMath {
+
+    //Newton iterations supported, more are pointless in double precision
+    static final int MAX_ITERATIONS = 5;
+
+    //maximum relative error of fourthRoot for given number of iterations
+    private static final double[] MAX_RELATIVE_ERROR = new double[MAX_ITERATIONS + 1];
+
+    //x^(-1/4) estimate: (5/4 of exponent bias) - bits/4, tuned for smallest error after Newton steps
+    private static final long INV_FOURTH_ROOT_MAGIC = 0x4FEB090000000000L;
+
+    static {
+        //error only depends on mantissa and exponent modulo 4, so sweep 4 octaves
+        for(int iterations = 0; iterations <= MAX_ITERATIONS; iterations++){
+            double maxError = 0;
+            for(int octave = 0; octave < 4; octave++){
+                for(int i = 0; i < 4096; i++){
+                    double x = Math.scalb(1 + i / 4096.0, octave);
+                    double exact = Math.sqrt(Math.sqrt(x));
+                    maxError = Math.max(maxError, Math.abs(fourthRoot(x, iterations) - exact) / exact);
+                }
+            }
+            //leave some margin for rounding of the last iteration
+            MAX_RELATIVE_ERROR[iterations] = maxError + 4 * Math.ulp(1.0);
+        }
+    }
+
+    private FastMath(){}
+
+    static double fourthRoot(double x, int iterations){
+        if(!(x > 0)){
+            return x == 0 ? 0 : Double.NaN;
+        }
+
+        //r approximates x^(-1/4)
+        double r = Double.longBitsToDouble(INV_FOURTH_ROOT_MAGIC - (Double.doubleToRawLongBits(x) >> 2));
+        for(int i = 0; i < iterations; i++){
+            double r2 = r * r;
+            r = r * (1.25 - 0.25 * x * r2 * r2);
+        }
+
+        //x^(1/4) = x * x^(-3/4)
+        return x * r * r * r;
+    }
+
+    static double cube(double x){
+        return x * x * x;
+    }
+
+    static double fourthPower(double x){
+        double x2 = x * x;
+        return x2 * x2;
+    }
+
+    static double getMaxRelativeError(int iterations){
+        return MAX_RELATIVE_ERROR[iterations];
+    }
+
+    //fewest iterations which keep fourthRoot within given relative error
+    static int iterationsFor(double maxRelativeError){
+        for(int iterations = 0; iterations < MAX_ITERATIONS; iterations++){
+            if(MAX_RELATIVE_ERROR[iterations] <= maxRelativeError){
+                return iterations;
+            }
+        }
+        return MAX_ITERATIONS;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.themarpe.openthermalcamera;
+
+import android.util.Log;
+
+/*
+ * Splits the raw serial byte stream into COBS encoded messages.
+ * Incoming bytes are stored in a fixed size ring buffer and every byte is checked for the
+ * message delimiter (0x00) exactly once. Complete messages are handed out as slices of the
+ * ring buffer (or of a scratch buffer if the message wraps around the end of the ring).
+ * If no delimiter arrives before the ring is full, the buffered bytes are dropped and
+ * everything up to the next delimiter is skipped, so the buffer never grows.
+ */
+class FrameAssembler {
+
+    private static final String TAG = "FrameAssembler";
+
+    //Largest message is GET_FRAME_DATA (4 + 1668 bytes + COBS overhead), leave room for two
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    interface FrameListener {
+        //buffer is only valid until onFrame returns
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] ring;
+    private final byte[] wrapped;
+    private final int mask;
+
+    //start of message being assembled
+    private int readPos = 0;
+    //number of bytes stored, starting at readPos
+    private int count = 0;
+    //number of stored bytes already checked for delimiter
+    private int scanned = 0;
+
+    //set after an overflow, skip bytes until next delimiter
+    private boolean resync = false;
+    private int droppedMessages = 0;
+
+    FrameAssembler(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    FrameAssembler(int capacity){
+        //round capacity up to power of 2 for cheap wrapping
+        int cap = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        ring = new byte[cap];
+        wrapped = new byte[cap];
+        mask = cap - 1;
+    }
+
+    public void push(byte[] data, FrameListener listener){
+        push(data, 0, data.length, listener);
+    }
+
+    public void push(byte[] data, int offset, int length, FrameListener listener){
+
+        int end = offset + length;
+
+        while(offset < end){
+
+            if(resync){
+                //skip up to and including next delimiter
+                while(offset < end && data[offset] != 0x00){
+                    offset++;
+                }
+                if(offset < end){
+                    resync = false;
+                    offset++;
+                }
+                continue;
+            }
+
+            //copy as much as fits into ring (max 2 parts)
+            int toCopy = Math.min(end - offset, ring.length - count);
+            int writePos = (readPos + count) & mask;
+            int firstPart = Math.min(toCopy, ring.length - writePos);
+            System.arraycopy(data, offset, ring, writePos, firstPart);
+            System.arraycopy(data, offset + firstPart, ring, 0, toCopy - firstPart);
+            offset += toCopy;
+            count += toCopy;
+
+            //scan only new bytes
+            while(scanned < count){
+                int pos = (readPos + scanned) & mask;
+                if(ring[pos] == 0x00){
+                    emit(scanned, listener);
+                    //skip message and its delimiter
+                    readPos = (pos + 1) & mask;
+                    count -= scanned + 1;
+                    scanned = 0;
+                } else {
+                    scanned++;
+                }
+            }
+
+            //ring full and no delimiter, drop and wait for next delimiter
+            if(count == ring.length){
+                Log.w(TAG, "No message delimiter in " + count + " bytes, dropping");
+                droppedMessages++;
+                readPos = 0;
+                count = 0;
+                scanned = 0;
+                resync = true;
+            }
+        }
+
+    }
+
+    private void emit(int length, FrameListener listener){
+        if(listener == null) return;
+
+        if(readPos + length <= ring.length){
+            //contiguous
+            listener.onFrame(ring, readPos, length);
+        } else {
+            //message wraps around, make it contiguous
+            int firstPart = ring.length - readPos;
+            System.arraycopy(ring, readPos, wrapped, 0, firstPart);
+            System.arraycopy(ring, 0, wrapped, firstPart, length - firstPart);
+            listener.onFrame(wrapped, 0, length);
+        }
+    }
+
+    public void reset(){
+        readPos = 0;
+        count = 0;
+        scanned = 0;
+        resync = false;
+        droppedMessages = 0;
+    }
+
+    public int getDroppedMessages(){
+        return droppedMessages;
+    }
+
+}
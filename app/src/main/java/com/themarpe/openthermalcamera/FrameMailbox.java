@@ -0,0 +1,65 @@
+package com.themarpe.openthermalcamera;
+
+import java.util.ArrayDeque;
+
+/*
+ * Bounded handoff between a producer (decode thread) and a slower consumer (main thread).
+ * Holds at most depth items, when full the oldest unconsumed items are replaced by the new one
+ * and handed to the recycler, so they can be returned to a pool. Dropped items are counted.
+ */
+class FrameMailbox<T> {
+
+    interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    private final ArrayDeque<T> items;
+    private final Recycler<T> recycler;
+    private int depth;
+    private long droppedCount = 0;
+
+    FrameMailbox(Recycler<T> recycler){
+        this(1, recycler);
+    }
+
+    FrameMailbox(int depth, Recycler<T> recycler){
+        this.depth = Math.max(1, depth);
+        this.recycler = recycler;
+        items = new ArrayDeque<>(this.depth);
+    }
+
+    //drops oldest items until the new one fits
+    synchronized void offer(T item){
+        while(items.size() >= depth){
+            T dropped = items.poll();
+            droppedCount++;
+            if(recycler != null){
+                recycler.recycle(dropped);
+            }
+        }
+        items.add(item);
+    }
+
+    //returns oldest item or null if empty
+    synchronized T poll(){
+        return items.poll();
+    }
+
+    //items over the new depth are left for the consumer, offer drops them on the next call
+    synchronized void setDepth(int depth){
+        this.depth = Math.max(1, depth);
+    }
+
+    synchronized int getDepth(){
+        return depth;
+    }
+
+    synchronized int size(){
+        return items.size();
+    }
+
+    synchronized long getDroppedCount(){
+        return droppedCount;
+    }
+
+}
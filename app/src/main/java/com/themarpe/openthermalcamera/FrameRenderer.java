@@ -0,0 +1,159 @@
+package com.themarpe.openthermalcamera;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Colors frames on its own thread into one of two IRPictures while the other one is on screen.
+ * When a picture is done, the two are swapped on the main thread and only then the next frame
+ * is rendered, so the displayed picture (and its bitmap) is never written to.
+ * The spectrum is double buffered the same way, but only copied when it changes.
+ */
+class FrameRenderer {
+
+    //called on main thread after the swap, picture stays valid and unchanged until the next call
+    interface Listener {
+        //spectrum is null if it didn't change since the last call
+        void onFrameRendered(IRPicture picture, Bitmap spectrum);
+    }
+
+    //called on render thread with the settings all pictures are rendered with
+    interface SettingsEditor {
+        void edit(IRPicture settings);
+    }
+
+    private final HandlerThread renderThread;
+    private final Handler renderHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ThermalFrame.Pool framePool = new ThermalFrame.Pool();
+    private final FrameMailbox<ThermalFrame> mailbox = new FrameMailbox<>(1, framePool::release);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    //front is owned by main thread, back and settings by render thread
+    private IRPicture front, back;
+    private final IRPicture settings;
+    private final Bitmap[] spectrumBuffers = new Bitmap[2];
+    private int shownSpectrum = 0;
+
+    //render thread only
+    private boolean swapPending = false;
+    private boolean renderRequested = false;
+    private ThermalFrame lastFrame = null;
+
+    private volatile Listener listener = null;
+
+    FrameRenderer(int width, int height){
+        front = new IRPicture(width, height);
+        back = new IRPicture(width, height);
+        settings = new IRPicture(width, height);
+        for(int i = 0; i < spectrumBuffers.length; i++){
+            spectrumBuffers[i] = Bitmap.createBitmap(IRPicture.getSpectrumResolution(), 1, Bitmap.Config.ARGB_8888);
+        }
+
+        renderThread = new HandlerThread("OTC-Render", Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+    }
+
+    void setListener(Listener listener){
+        this.listener = listener;
+    }
+
+    //picture currently on screen, only to be used on main thread
+    IRPicture getPicture(){
+        return front;
+    }
+
+    //copies the frame, so it can be called from a frame listener on the decode thread
+    void submit(ThermalFrame frame){
+        ThermalFrame copy = framePool.obtain();
+        copy.set(frame);
+
+        //replace frame that wasn't rendered yet
+        mailbox.offer(copy);
+
+        if(drainScheduled.compareAndSet(false, true)){
+            renderHandler.post(drain);
+        }
+    }
+
+    //edits settings on render thread and renders last frame again with them
+    void updateSettings(SettingsEditor editor){
+        renderHandler.post(() -> {
+            editor.edit(settings);
+            renderRequested = true;
+            drain();
+        });
+    }
+
+    void quit(){
+        listener = null;
+        mainHandler.removeCallbacksAndMessages(null);
+        renderThread.quitSafely();
+        //a frame being upscaled is abandoned instead of finished (see Upscaler.render)
+        renderThread.interrupt();
+    }
+
+    private final Runnable drain = this::drain;
+
+    //render thread
+    private void drain(){
+        drainScheduled.set(false);
+
+        //back is still waiting to be swapped in, onSwapped drains again
+        if(swapPending) return;
+
+        ThermalFrame frame = mailbox.poll();
+        if(frame != null){
+            framePool.release(lastFrame);
+            lastFrame = frame;
+        } else if(renderRequested && lastFrame != null){
+            frame = lastFrame;
+        } else {
+            return;
+        }
+        renderRequested = false;
+
+        back.copySettings(settings);
+        //interrupted while upscaling, render thread is quitting
+        if(!back.updateTemperatureData(frame)) return;
+
+        //fill the spectrum buffer that isn't shown
+        boolean spectrumChanged = !back.hasSameSpectrum(front);
+        if(spectrumChanged){
+            back.copySpectrumTo(spectrumBuffers[1 - shownSpectrum]);
+        }
+
+        swapPending = true;
+        mainHandler.post(() -> swap(spectrumChanged));
+    }
+
+    //main thread
+    private void swap(boolean spectrumChanged){
+        IRPicture rendered = back;
+        back = front;
+        front = rendered;
+        if(spectrumChanged){
+            shownSpectrum = 1 - shownSpectrum;
+        }
+
+        Listener l = listener;
+        if(l != null){
+            l.onFrameRendered(front, spectrumChanged ? spectrumBuffers[shownSpectrum] : null);
+        }
+
+        renderHandler.post(onSwapped);
+    }
+
+    private final Runnable onSwapped = () -> {
+        swapPending = false;
+        drain();
+    };
+
+}
@@ -11,10 +11,22 @@ public class IRPicture {
     private ThermalPalette thermalPalette;
     private double[][] tempData;
     Bitmap irBitmap;
+    //colors are rendered here first and copied to the bitmap with one setPixels call
+    private int[] irPixels;
+    //bitmap pixels per ir pixel, more than 1 when upscaled
+    private int bitmapScale = 1;
+
+    protected Upscaler.Mode upscaling = Upscaler.Mode.NONE;
+    protected int upscalingFactor = 1;
+    private Upscaler upscaler = null;
 
 
     private static final int SPECTRUM_RESOLUTION = 256;
-    Bitmap spectrumBitmap;
+    private final int[] spectrumPixels = new int[SPECTRUM_RESOLUTION];
+    private final double[] spectrumPositions = new double[SPECTRUM_RESOLUTION];
+    //spectrum is identified by palette and the lookup table positions of min and max
+    private ThermalPalette spectrumPalette = null;
+    private int spectrumStart, spectrumEnd;
 
     protected boolean customTemperatureRange = false;
 
@@ -22,31 +34,41 @@ public class IRPicture {
     protected double customMaxTemperature;
 
     private int width, height;
-    private double minTemp, maxTemp, maxTempSearchArea;
+    private double minTemp, maxTemp, meanTemp, maxTempSearchArea;
     private int searchAreaSize=3;
     public void setSeachAreaSize(int size){searchAreaSize=size;}
 
     protected boolean dynamicRange;
+    //data is relative intensity instead of temperature, always auto ranged
+    protected boolean rawIntensity = false;
     protected float dynamicRangeMinDifference = 0;
 
     private Point maxTempPixel = new Point(0,0);
+
+    //sensor state of the last frame, saved with pictures
+    private final MLX90640.FrameContext frameContext = new MLX90640.FrameContext();
     private Point maxTempPixelInSearchArea = new Point(0,0);
 
     IRPicture(IRPicture toCopy){
 
         this(toCopy.width, toCopy.height);
-        tempData = toCopy.tempData.clone();
-        thermalPalette = toCopy.thermalPalette;
+        for(int i = 0; i < height; i++){
+            System.arraycopy(toCopy.tempData[i], 0, tempData[i], 0, width);
+        }
+        copySettings(toCopy);
         irBitmap = Bitmap.createBitmap(toCopy.irBitmap);
-        customMaxTemperature = toCopy.customMaxTemperature;
-        customMinTemperature = toCopy.customMinTemperature;
+        irPixels = toCopy.irPixels.clone();
+        bitmapScale = toCopy.bitmapScale;
         minTemp = toCopy.minTemp;
         maxTemp = toCopy.maxTemp;
-        dynamicRange = toCopy.dynamicRange;
-        dynamicRangeMinDifference = toCopy.dynamicRangeMinDifference;
+        meanTemp = toCopy.meanTemp;
+        rawIntensity = toCopy.rawIntensity;
         maxTempPixel = new Point(maxTempPixel);
+        frameContext.set(toCopy.frameContext);
 
-        spectrumBitmap = Bitmap.createBitmap(toCopy.spectrumBitmap);
+        spectrumPalette = toCopy.spectrumPalette;
+        spectrumStart = toCopy.spectrumStart;
+        spectrumEnd = toCopy.spectrumEnd;
 
     }
 
@@ -61,28 +83,66 @@ public class IRPicture {
         tempData = new double[height][width];
         this.thermalPalette = thermalPalette;
         irBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        irPixels = new int[width * height];
+    }
+
+    //palette, range and search area settings, not the data
+    public void copySettings(IRPicture from){
+        thermalPalette = from.thermalPalette;
+        dynamicRange = from.dynamicRange;
+        dynamicRangeMinDifference = from.dynamicRangeMinDifference;
+        customTemperatureRange = from.customTemperatureRange;
+        customMinTemperature = from.customMinTemperature;
+        customMaxTemperature = from.customMaxTemperature;
+        searchAreaSize = from.searchAreaSize;
+        upscaling = from.upscaling;
+        upscalingFactor = from.upscalingFactor;
+    }
 
-        spectrumBitmap = Bitmap.createBitmap(SPECTRUM_RESOLUTION, 1, Bitmap.Config.ARGB_8888);
+    //false if the rendering thread was interrupted, the bitmap then still shows the previous frame
+    public boolean updateTemperatureData(ThermalFrame frame){
+        frameContext.set(frame.context);
+        rawIntensity = frame.pipelineMode == OTC.PipelineMode.RAW_INTENSITY;
+        meanTemp = frame.meanTemperature;
+        return updateTemperatureData(frame.temperature, frame.minTemperature, frame.maxTemperature, frame.maxX, frame.maxY);
     }
 
-    public void updateTemperatureData(double[][] temperatureData){
-        minTemp = temperatureData[0][0];
-        maxTemp = temperatureData[0][0];
+    public boolean updateTemperatureData(double[][] temperatureData){
+        double min = temperatureData[0][0];
+        double max = temperatureData[0][0];
+        int maxX = 0, maxY = 0;
+        double sum = 0;
+        int count = 0;
 
-        maxTempPixel.set(0,0); //TODO: why???
         for(int i = 0; i<temperatureData.length; i++){
             for(int j = 0; j<temperatureData[i].length; j++){
 
-                if(temperatureData[i][j] < minTemp){
-                    minTemp = temperatureData[i][j];
+                sum += temperatureData[i][j];
+                count++;
+                if(temperatureData[i][j] < min){
+                    min = temperatureData[i][j];
                 }
-                if(temperatureData[i][j] > maxTemp){
-                    maxTemp = temperatureData[i][j];
-                    maxTempPixel.set(j, i);
+                if(temperatureData[i][j] > max){
+                    max = temperatureData[i][j];
+                    maxX = j;
+                    maxY = i;
                 }
             }
         }
-        tempData = temperatureData;
+        meanTemp = sum / count;
+        return updateTemperatureData(temperatureData, min, max, maxX, maxY);
+    }
+
+    //min, max and position of max must already be known (see ThermalFrame)
+    private boolean updateTemperatureData(double[][] temperatureData, double min, double max, int maxX, int maxY){
+        minTemp = min;
+        maxTemp = max;
+        maxTempPixel.set(maxX, maxY);
+
+        //copy, as given data may be reused by the caller
+        for(int i = 0; i < height; i++){
+            System.arraycopy(temperatureData[i], 0, tempData[i], 0, width);
+        }
 
         //Find max temp pixel in searchArea
         maxTempSearchArea=-40;
@@ -99,42 +159,60 @@ public class IRPicture {
             }
         }
 
-        // min difference setting
+        // min difference setting (in degrees, not applicable to intensities)
         double tmpMinTemp = minTemp, tmpMaxTemp = maxTemp;
         double avgTemp = (minTemp+maxTemp) / 2.0;
-        if(dynamicRangeMinDifference > 0 && dynamicRangeMinDifference > (maxTemp - minTemp) ){
+        boolean autoRange = dynamicRange || rawIntensity;
+        if(!rawIntensity && dynamicRangeMinDifference > 0 && dynamicRangeMinDifference > (maxTemp - minTemp) ){
             tmpMinTemp = avgTemp - (dynamicRangeMinDifference / 2.0);
             tmpMaxTemp = avgTemp + (dynamicRangeMinDifference / 2.0);
         }
 
-        //convert temperatures
-        for(int y = 0; y < OTC.IR_HEIGHT; y++){
-            for(int x = 0 ; x<OTC.IR_WIDTH; x++){
-
-                if(dynamicRange) {
-                    irBitmap.setPixel(x, y, thermalPalette.temperatureToColor(getTemperatureAt(x, y), tmpMinTemp, tmpMaxTemp));
-                } else if(customTemperatureRange) {
-                    irBitmap.setPixel(x, y, thermalPalette.temperatureToColor(getTemperatureAt(x, y), customMinTemperature, customMaxTemperature));
-                } else {
-                    irBitmap.setPixel(x, y, thermalPalette.temperatureToColor(getTemperatureAt(x, y)));
-                }
-
-            }
+        //range the palette is stretched over
+        double rangeMin, rangeMax;
+        if(autoRange) {
+            rangeMin = tmpMinTemp;
+            rangeMax = tmpMaxTemp;
+        } else if(customTemperatureRange) {
+            rangeMin = customMinTemperature;
+            rangeMax = customMaxTemperature;
+        } else {
+            rangeMin = thermalPalette.getDefaultMinTemperature();
+            rangeMax = thermalPalette.getDefaultMaxTemperature();
         }
 
-        //create spectrum
-        for(int i = 0; i < SPECTRUM_RESOLUTION; i++){
-            double curTemp = minTemp + (maxTemp - minTemp) * (i / (double)SPECTRUM_RESOLUTION );
-
-            if(dynamicRange) {
-                spectrumBitmap.setPixel(i, 0, thermalPalette.temperatureToColor(curTemp, tmpMinTemp, tmpMaxTemp));
-            } else if(customTemperatureRange) {
-                spectrumBitmap.setPixel(i, 0, thermalPalette.temperatureToColor(curTemp, customMinTemperature, customMaxTemperature));
-            } else {
-                spectrumBitmap.setPixel(i, 0, thermalPalette.temperatureToColor(curTemp));
+        //convert temperatures, interpolated first if upscaling
+        if(upscaling != Upscaler.Mode.NONE && upscalingFactor > 1){
+            if(upscaler == null || !upscaler.matches(upscaling, upscalingFactor, width, height)){
+                upscaler = new Upscaler(upscaling, upscalingFactor, width, height);
+            }
+            setBitmapScale(upscalingFactor);
+            if(!upscaler.render(tempData, thermalPalette, rangeMin, rangeMax, irPixels)){
+                return false;
+            }
+        } else {
+            setBitmapScale(1);
+            for(int y = 0; y < height; y++){
+                thermalPalette.temperaturesToColors(tempData[y], 0, width, rangeMin, rangeMax, irPixels, y * width);
             }
         }
+        int bitmapWidth = width * bitmapScale;
+        irBitmap.setPixels(irPixels, 0, bitmapWidth, 0, 0, bitmapWidth, height * bitmapScale);
+
+        //spectrum spans min to max, only drawn when copied (see copySpectrumTo)
+        spectrumPalette = thermalPalette;
+        spectrumStart = ThermalPalette.getLookupPosition(minTemp, rangeMin, rangeMax);
+        spectrumEnd = ThermalPalette.getLookupPosition(maxTemp, rangeMin, rangeMax);
 
+        return true;
+    }
+
+    //reallocates bitmap and pixels if scale changed
+    private void setBitmapScale(int scale){
+        if(scale == bitmapScale) return;
+        bitmapScale = scale;
+        irBitmap = Bitmap.createBitmap(width * scale, height * scale, Bitmap.Config.ARGB_8888);
+        irPixels = new int[width * scale * height * scale];
     }
 
     public Point getMaxTemperaturePixel(){        return maxTempPixel;    }
@@ -148,8 +226,37 @@ public class IRPicture {
         return irBitmap;
     }
 
-    public Bitmap getSpectrumBitmap(){
-        return spectrumBitmap;
+    //true if both pictures would draw the same spectrum
+    public boolean hasSameSpectrum(IRPicture other){
+        return spectrumPalette == other.spectrumPalette && spectrumStart == other.spectrumStart && spectrumEnd == other.spectrumEnd;
+    }
+
+    //draws the spectrum into a bitmap of SPECTRUM_RESOLUTION x 1 owned by the caller
+    //only called when the spectrum differs from the one on screen (see hasSameSpectrum)
+    public void copySpectrumTo(Bitmap target){
+        if(spectrumPalette == null) return;
+        for(int i = 0; i < SPECTRUM_RESOLUTION; i++){
+            spectrumPositions[i] = spectrumStart + (spectrumEnd - (double) spectrumStart) * (i / (double)SPECTRUM_RESOLUTION );
+        }
+        //positions are already lookup table indices
+        spectrumPalette.temperaturesToColors(spectrumPositions, 0, SPECTRUM_RESOLUTION, 0, ThermalPalette.LOOKUP_TABLE_SIZE - 1, spectrumPixels, 0);
+        target.setPixels(spectrumPixels, 0, SPECTRUM_RESOLUTION, 0, 0, SPECTRUM_RESOLUTION, 1);
+    }
+
+    public static int getSpectrumResolution(){
+        return SPECTRUM_RESOLUTION;
+    }
+
+    public double getMinTemperature(){
+        return minTemp;
+    }
+
+    public double getMaxTemperature(){
+        return maxTemp;
+    }
+
+    public double getMeanTemperature(){
+        return meanTemp;
     }
 
     public ThermalPalette getThermalPalette(){
@@ -160,6 +267,10 @@ public class IRPicture {
         thermalPalette = tp;
     }
 
+    public boolean isRawIntensity(){
+        return rawIntensity;
+    }
+
     public void setDynamicRange(boolean enabled){
         dynamicRange = enabled;
     }
@@ -168,6 +279,20 @@ public class IRPicture {
         dynamicRangeMinDifference = minDifference;
     }
 
+    //factor is ignored if mode is NONE, display then relies on bitmap filtering
+    public void setUpscaling(Upscaler.Mode mode, int factor){
+        upscaling = mode;
+        upscalingFactor = Math.max(1, factor);
+    }
+
+    public Upscaler.Mode getUpscaling(){
+        return upscaling;
+    }
+
+    public int getBitmapScale(){
+        return bitmapScale;
+    }
+
     public void setCustomTemperatureRange(boolean enabled){
         customTemperatureRange = enabled;
     }
@@ -188,6 +313,10 @@ public class IRPicture {
         return height;
     }
 
+    public MLX90640.FrameContext getFrameContext(){
+        return frameContext;
+    }
+
     public double[][] getTemperatureData(){
         return tempData;
     }
@@ -3,6 +3,7 @@ package com.themarpe.openthermalcamera;
 import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
@@ -12,7 +13,6 @@ import android.graphics.PointF;
 import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.util.Log;
-import android.widget.ImageView;
 
 import androidx.appcompat.widget.AppCompatImageView;
 
@@ -44,9 +44,18 @@ public class IRView extends AppCompatImageView {
     private boolean maxMarkerEnabled = false;
     private PointF maxTemperaturePixelIndex = new PointF(0,0);
 
+    //only changes with the view size
     private Matrix irViewMatrix = new Matrix();
     private IRPicture irPicture = null;
-
+    //drawn directly, so swapping bitmaps doesn't go through setImageBitmap
+    private Bitmap irBitmap = null;
+    //irViewMatrix scaled down to the bitmap, which is larger than the sensor when upscaled
+    private Matrix bitmapMatrix = new Matrix();
+    private int bitmapScale = 1;
+    private Paint irPaint = new Paint();
+
+    //marker in ir pixel coordinates and mapped to view coordinates
+    float[] xyMarkerPixel = new float[]{0.5f, 0.5f};
     float[] xyMarkerVector = new float[]{0.5f, 0.5f};
 
     public Matrix getIrViewMatrix(){
@@ -121,43 +130,51 @@ public class IRView extends AppCompatImageView {
     }
 
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        //rotate and scale image and marker
+        irViewMatrix.reset();
+
+        //rotate
+        irViewMatrix.preRotate(90f, 0, 0);
+        //move
+        irViewMatrix.postTranslate(OTC.IR_HEIGHT, 0);
+        //scale
+        irViewMatrix.postScale(((float) w)/OTC.IR_HEIGHT, ((float) h) / OTC.IR_WIDTH, 0,0);
+
+        updateBitmapMatrix();
+    }
+
+    private void updateBitmapMatrix(){
+        bitmapMatrix.set(irViewMatrix);
+        bitmapMatrix.preScale(1.0f / bitmapScale, 1.0f / bitmapScale);
+    }
+
     public void update() {
 
         if(irPicture == null) return;
 
-        setImageBitmap(irPicture.getBitmap());
+        irBitmap = irPicture.getBitmap();
+        if(irPicture.getBitmapScale() != bitmapScale){
+            bitmapScale = irPicture.getBitmapScale();
+            updateBitmapMatrix();
+        }
 
         //get max temp
         if(!searchAreaEnabled){ //Display max temp from IR picture
-            xyMarkerVector[0] = irPicture.getMaxTemperaturePixel().x;
-            xyMarkerVector[1] = irPicture.getMaxTemperaturePixel().y;
+            xyMarkerPixel[0] = irPicture.getMaxTemperaturePixel().x;
+            xyMarkerPixel[1] = irPicture.getMaxTemperaturePixel().y;
         }
         else{ //Display max temp from IR picture INSIDE the searchArea!
-            xyMarkerVector[0] = irPicture.getMaxTemperaturePixelInSearchArea().x;
-            xyMarkerVector[1] = irPicture.getMaxTemperaturePixelInSearchArea().y;
+            xyMarkerPixel[0] = irPicture.getMaxTemperaturePixelInSearchArea().x;
+            xyMarkerPixel[1] = irPicture.getMaxTemperaturePixelInSearchArea().y;
         }
 
         //move to middle of the pixel
-        xyMarkerVector[0] += 0.5f;
-        xyMarkerVector[1] += 0.5f;
-
-        //rotate
-        //rotate and scale image and marker
-        irViewMatrix.reset();
-
-        //rotate
-        irViewMatrix.preRotate(90f, 0, 0);
-        //move
-        irViewMatrix.postTranslate(OTC.IR_HEIGHT, 0);
-        //scale
-        irViewMatrix.postScale(((float) getWidth())/OTC.IR_HEIGHT, ((float) getHeight()) / OTC.IR_WIDTH, 0,0);
-
-        //apply to marker
-        irViewMatrix.mapPoints(xyMarkerVector);
-
-        setScaleType(ImageView.ScaleType.MATRIX);   //required
-        //apply to ir image
-        setImageMatrix(irViewMatrix);
+        xyMarkerPixel[0] += 0.5f;
+        xyMarkerPixel[1] += 0.5f;
 
         //new frame available, invalidate irView
         invalidate();
@@ -189,12 +206,18 @@ public class IRView extends AppCompatImageView {
             canvas.setDrawFilter(noFilterPaint);
         }
 
-        super.onDraw(canvas);
+        if(irBitmap != null) {
+            irPaint.setAlpha(getImageAlpha());
+            canvas.drawBitmap(irBitmap, bitmapMatrix, irPaint);
+        }
 
         canvas.setDrawFilter(null);
 
         if(maxMarkerEnabled) {
 
+            //apply to marker
+            irViewMatrix.mapPoints(xyMarkerVector, xyMarkerPixel);
+
             float markerSize = getHeight() * maxMarkerScale;
             float x = xyMarkerVector[0];
             float y = xyMarkerVector[1];
@@ -27,6 +27,125 @@ class MLX90640 {
 		double[] ilChessC = new double[3];
 		int[] brokenPixels = new int[5];
 		int[] outlierPixels = new int[5];
+		double[] alphaCorrR = new double[4];
+		//incremented each time parameters are extracted, invalidates coefficient caches
+		int revision;
+		//broken and outlier pixels, replaced by the weighted sum of 4 neighbours
+		//[scan mode (0 interleaved, 1 chess)][BAD_PIXEL_NEIGHBOURS * index], see BuildBadPixelCorrection
+		int badPixelCount;
+		int[] badPixels = new int[10];
+		int[][] badPixelNeighbours = new int[2][10 * BAD_PIXEL_NEIGHBOURS];
+		double[][] badPixelWeights = new double[2][10 * BAD_PIXEL_NEIGHBOURS];
+	}
+
+	//Values decoded once per frame and shared by CalculateTo and GetImage (see GetFrameContext)
+	public static class FrameContext {
+		int subPage;
+		//0 interleaved, 0x80 chess
+		int mode;
+		int resolution;
+		double vdd;
+		double ta;
+		double gain;
+		//compensation pixels, gain and offset compensated
+		double irDataCP0;
+		double irDataCP1;
+
+		void set(FrameContext other)
+		{
+			subPage = other.subPage;
+			mode = other.mode;
+			resolution = other.resolution;
+			vdd = other.vdd;
+			ta = other.ta;
+			gain = other.gain;
+			irDataCP0 = other.irDataCP0;
+			irDataCP1 = other.irDataCP1;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "subPage=" + subPage + ", mode=" + (mode == 0 ? "interleaved" : "chess") + ", resolution=" + resolution
+					+ ", vdd=" + vdd + ", ta=" + ta + ", gain=" + gain + ", irDataCP=" + irDataCP0 + "/" + irDataCP1;
+		}
+	}
+
+	//context of frames passed to CalculateTo/GetImage without one
+	private final FrameContext frameContext = new FrameContext();
+
+	//Per pixel coefficients of one subpage, which only depend on Ta, Vdd, scan mode and Params.
+	//Pixels are ordered like the subpage pixel list, not by pixel number. Coefficient f of
+	//pixel i is at i * stride + f * fieldStep: interleaved records keep a pixel's coefficients
+	//next to each other, separate layout stores each coefficient as its own block of 384.
+	private static class CoefficientCache {
+	    //offset*(1+kta*(ta-25))*(1+kv*(vdd-3.3)), including interleave/chess correction
+	    static final int OFFSET = 0;
+	    static final int ALPHA = 1;
+	    //alphaCompensated^3
+	    static final int ALPHA3 = 2;
+	    //alphaCompensated * (1 - ksTo[1] * 273.15)
+	    static final int ALPHA_KSTO = 3;
+	    static final int FIELDS = 4;
+
+	    Params params;
+	    int revision;
+	    int mode = -1;
+	    double ta;
+	    double vdd;
+	    int[] pixels;
+
+	    int stride;
+	    int fieldStep;
+	    final double[] values = new double[384 * FIELDS];
+	    //same coefficients for single precision calculation
+	    final float[] valuesF = new float[384 * FIELDS];
+
+	    void setLayout(boolean interleaved)
+	    {
+	        stride = interleaved ? FIELDS : 1;
+	        fieldStep = interleaved ? 1 : 384;
+	    }
+	}
+
+	private final CoefficientCache[] coefficientCache = { new CoefficientCache(), new CoefficientCache() };
+
+	//Ta [deg C] and Vdd [V] may drift this much before the cached coefficients are recalculated
+	private double taTolerance = 0.05;
+	private double vddTolerance = 0.0005;
+
+	//per pixel calculations in float instead of double
+	private boolean singlePrecision = false;
+
+	//coefficient layout of CoefficientCache
+	private boolean interleavedCoefficients = true;
+
+	//Newton iterations of FastMath.fourthRoot, -1 uses Math.sqrt
+	private int fastMathIterations = -1;
+
+	//absolute temperature of the hottest measurable object (300 C), relative root error scales with it
+	private static final double MAX_OBJECT_TEMPERATURE_K = 573.15;
+
+	static final int BAD_PIXEL_NEIGHBOURS = 4;
+
+	//Pixel patterns don't depend on the EEPROM, so they are computed only once.
+	//SUBPAGE_PIXELS[scan mode (0 interleaved, 1 chess)][subpage] lists the 384 pixels measured in that subpage
+	static final int[][][] SUBPAGE_PIXELS = new int[2][2][384];
+	static final int[] IL_PATTERN = new int[768];
+	static final int[] CONVERSION_PATTERN = new int[768];
+
+	static {
+		int[][] counts = new int[2][2];
+		for(int pixelNumber = 0; pixelNumber < 768; pixelNumber++)
+		{
+			int ilPattern = pixelNumber / 32 - (pixelNumber / 64) * 2;
+			int chessPattern = ilPattern ^ (pixelNumber - (pixelNumber/2)*2);
+			IL_PATTERN[pixelNumber] = ilPattern;
+			CONVERSION_PATTERN[pixelNumber] = ((pixelNumber + 2) / 4 - (pixelNumber + 3) / 4 + (pixelNumber + 1) / 4 - pixelNumber / 4) * (1 - 2 * ilPattern);
+
+			SUBPAGE_PIXELS[0][ilPattern][counts[0][ilPattern]++] = pixelNumber;
+			SUBPAGE_PIXELS[1][chessPattern][counts[1][chessPattern]++] = pixelNumber;
+		}
 	}
 
 
@@ -51,6 +170,8 @@ class MLX90640 {
 	        ExtractCPParameters(eeData, mlx90640);
 	        ExtractCILCParameters(eeData, mlx90640);
 	        error = ExtractDeviatingPixels(eeData, mlx90640);  
+	        BuildBadPixelCorrection(mlx90640);
+	        mlx90640.revision++;
 	    }
 	    
 	    return error;
@@ -71,7 +192,7 @@ class MLX90640 {
 	        vdd = vdd - 65536;
 	    }
 	    resolutionRAM = (frameData[832] & 0x0C00) >> 10;
-	    resolutionCorrection = Math.pow(2, (double)params.resolutionEE) / Math.pow(2, (double)resolutionRAM);
+	    resolutionCorrection = (double)(1 << params.resolutionEE) / (1 << resolutionRAM);
 	    vdd = (resolutionCorrection * vdd - params.vdd25) / params.kVdd + 3.3;
 	    
 	    return vdd;
@@ -80,14 +201,16 @@ class MLX90640 {
 	//------------------------------------------------------------------------------
 
 	double GetTa(int[] frameData, Params params)
+	{
+	    return GetTa(frameData, params, GetVdd(frameData, params));
+	}
+
+	private double GetTa(int[] frameData, Params params, double vdd)
 	{
 	    double ptat;
 	    double ptatArt;
-	    double vdd;
 	    double ta;
 	    
-	    vdd = GetVdd(frameData, params);
-	    
 	    ptat = frameData[800];
 	    if(ptat > 32767)
 	    {
@@ -99,7 +222,7 @@ class MLX90640 {
 	    {
 	        ptatArt = ptatArt - 65536;
 	    }
-	    ptatArt = (ptat / (ptat * params.alphaPTAT + ptatArt)) * Math.pow(2.0, 18.0);
+	    ptatArt = (ptat / (ptat * params.alphaPTAT + ptatArt)) * 262144.0;
 	    
 	    ta = (ptatArt / (1 + params.KvPTAT * (vdd - 3.3)) - params.vPTAT25);
 	    ta = ta / params.KtPTAT + 25;
@@ -116,232 +239,449 @@ class MLX90640 {
 	}    
 
 
-	void GetImage(int[] frameData, Params params, double[] result)
+	//0 tolerance recalculates coefficients whenever Ta or Vdd changes
+	void setCoefficientTolerance(double taTolerance, double vddTolerance)
+	{
+	    this.taTolerance = taTolerance;
+	    this.vddTolerance = vddTolerance;
+	    invalidateCoefficients();
+	}
+
+	//Deviation from double precision is checked by CalibrationPrecisionTest, against its own thresholds (max 1e-4 C, RMS 3e-5 C)
+	void setSinglePrecision(boolean enabled)
+	{
+	    singlePrecision = enabled;
+	}
+
+	boolean isSinglePrecision()
+	{
+	    return singlePrecision;
+	}
+
+	//Approximates fourth roots to stay within maxTemperatureError [C] over the sensor range, 0 uses exact roots
+	void setFastMath(double maxTemperatureError)
+	{
+	    if(maxTemperatureError <= 0)
+	    {
+	        fastMathIterations = -1;
+	    }
+	    else
+	    {
+	        fastMathIterations = FastMath.iterationsFor(maxTemperatureError / MAX_OBJECT_TEMPERATURE_K);
+	    }
+	}
+
+	boolean isFastMath()
+	{
+	    return fastMathIterations >= 0;
+	}
+
+	private double fourthRoot(double x)
+	{
+	    if(fastMathIterations < 0)
+	    {
+	        return Math.sqrt(Math.sqrt(x));
+	    }
+	    return FastMath.fourthRoot(x, fastMathIterations);
+	}
+
+	//Interleaved records or separate arrays, both are timed by the androidTest PixelLayoutBenchmark
+	void setInterleavedCoefficients(boolean interleaved)
+	{
+	    interleavedCoefficients = interleaved;
+	    invalidateCoefficients();
+	}
+
+	boolean isInterleavedCoefficients()
+	{
+	    return interleavedCoefficients;
+	}
+
+	void invalidateCoefficients()
+	{
+	    for(CoefficientCache cache : coefficientCache)
+	    {
+	        cache.params = null;
+	    }
+	}
+
+	private CoefficientCache getCoefficients(Params params, int subPage, int mode, double ta, double vdd)
+	{
+	    CoefficientCache cache = coefficientCache[subPage];
+	    if(cache.params == params && cache.revision == params.revision && cache.mode == mode
+	            && Math.abs(cache.ta - ta) <= taTolerance && Math.abs(cache.vdd - vdd) <= vddTolerance)
+	    {
+	        return cache;
+	    }
+
+	    int[] pixels = SUBPAGE_PIXELS[mode == 0 ? 0 : 1][subPage];
+	    double alphaScale = 1 + params.KsTa * (ta - 25);
+	    double cpAlpha = params.tgc * params.cpAlpha[subPage];
+	    double ksTo1 = 1 - params.ksTo[1] * 273.15;
+
+	    cache.setLayout(interleavedCoefficients);
+	    int stride = cache.stride;
+	    int fieldStep = cache.fieldStep;
+	    double[] values = cache.values;
+
+	    for( int i = 0; i < pixels.length; i++)
+	    {
+	        int pixelNumber = pixels[i];
+
+	        double offset = params.offset[pixelNumber]*(1 + params.kta[pixelNumber]*(ta - 25))*(1 + params.kv[pixelNumber]*(vdd - 3.3));
+	        if(mode !=  params.calibrationModeEE)
+	        {
+	          offset = offset - params.ilChessC[2] * (2 * IL_PATTERN[pixelNumber] - 1) + params.ilChessC[1] * CONVERSION_PATTERN[pixelNumber];
+	        }
+	        double alphaCompensated = (params.alpha[pixelNumber] - cpAlpha) * alphaScale;
+
+	        int r = i * stride;
+	        values[r + CoefficientCache.OFFSET * fieldStep] = offset;
+	        values[r + CoefficientCache.ALPHA * fieldStep] = alphaCompensated;
+	        values[r + CoefficientCache.ALPHA3 * fieldStep] = FastMath.cube(alphaCompensated);
+	        values[r + CoefficientCache.ALPHA_KSTO * fieldStep] = alphaCompensated * ksTo1;
+	    }
+
+	    for( int i = 0; i < values.length; i++)
+	    {
+	        cache.valuesF[i] = (float) values[i];
+	    }
+
+	    cache.pixels = pixels;
+	    cache.params = params;
+	    cache.revision = params.revision;
+	    cache.mode = mode;
+	    cache.ta = ta;
+	    cache.vdd = vdd;
+	    return cache;
+	}
+
+	void GetFrameContext(int[] frameData, Params params, FrameContext context)
 	{
 	    double vdd;
 	    double ta;
 	    double gain;
-	    double[] irDataCP = new double[2];
-	    double irData;
-	    double alphaCompensated;
+	    double irDataCP0;
+	    double irDataCP1;
 	    int mode;
-	    int ilPattern;
-	    int chessPattern;
-	    int pattern;
-	    int conversionPattern;
-	    double image;
-	    int subPage;
-	    
-	    subPage = frameData[833];
+
+	    context.subPage = frameData[833];
+	    context.resolution = (frameData[832] & 0x0C00) >> 10;
 	    vdd = GetVdd(frameData, params);
-	    ta = GetTa(frameData, params);
-	    
-	//------------------------- Gain calculation -----------------------------------    
+	    ta = GetTa(frameData, params, vdd);
+
+	//------------------------- Gain calculation -----------------------------------
 	    gain = frameData[778];
 	    if(gain > 32767)
 	    {
 	        gain = gain - 65536;
 	    }
-	    
-	    gain = params.gainEE / gain; 
-	  
-	//------------------------- Image calculation -------------------------------------    
+
+	    gain = params.gainEE / gain;
+
+	//------------------------- Compensation pixels --------------------------------
 	    mode = (frameData[832] & 0x1000) >> 5;
-	    
-	    irDataCP[0] = frameData[776];  
-	    irDataCP[1] = frameData[808];
-	    for( int i = 0; i < 2; i++)
+
+	    irDataCP0 = frameData[776];
+	    irDataCP1 = frameData[808];
+	    if(irDataCP0 > 32767)
 	    {
-	        if(irDataCP[i] > 32767)
-	        {
-	            irDataCP[i] = irDataCP[i] - 65536;
-	        }
-	        irDataCP[i] = irDataCP[i] * gain;
+	        irDataCP0 = irDataCP0 - 65536;
+	    }
+	    if(irDataCP1 > 32767)
+	    {
+	        irDataCP1 = irDataCP1 - 65536;
 	    }
-	    irDataCP[0] = irDataCP[0] - params.cpOffset[0] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	    irDataCP0 = irDataCP0 * gain;
+	    irDataCP1 = irDataCP1 * gain;
+
+	    irDataCP0 = irDataCP0 - params.cpOffset[0] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
 	    if( mode ==  params.calibrationModeEE)
 	    {
-	        irDataCP[1] = irDataCP[1] - params.cpOffset[1] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	        irDataCP1 = irDataCP1 - params.cpOffset[1] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
 	    }
 	    else
 	    {
-	      irDataCP[1] = irDataCP[1] - (params.cpOffset[1] + params.ilChessC[0]) * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	      irDataCP1 = irDataCP1 - (params.cpOffset[1] + params.ilChessC[0]) * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	    }
+
+	    context.vdd = vdd;
+	    context.ta = ta;
+	    context.gain = gain;
+	    context.mode = mode;
+	    context.irDataCP0 = irDataCP0;
+	    context.irDataCP1 = irDataCP1;
+	}
+
+	void GetImage(int[] frameData, Params params, double[] result)
+	{
+	    GetFrameContext(frameData, params, frameContext);
+	    GetImage(frameData, params, frameContext, result);
+	}
+
+	//context must be decoded from frameData with GetFrameContext
+	void GetImage(int[] frameData, Params params, FrameContext context, double[] result)
+	{
+	    double gain = context.gain;
+	    double irDataCPSubPage;
+	    double irData;
+	    int pixelNumber;
+	    double image;
+	    int subPage = context.subPage;
+
+	    if(subPage != 0 && subPage != 1)
+	    {
+	        return;
+	    }
+	    irDataCPSubPage = (subPage == 0) ? context.irDataCP0 : context.irDataCP1;
+
+	    //only pixels of current subpage
+	    CoefficientCache coefficients = getCoefficients(params, subPage, context.mode, context.ta, context.vdd);
+	    int[] pixels = coefficients.pixels;
+	    double[] values = coefficients.values;
+	    int stride = coefficients.stride;
+	    int offsetAt = CoefficientCache.OFFSET * coefficients.fieldStep;
+	    int alphaAt = CoefficientCache.ALPHA * coefficients.fieldStep;
+	    irDataCPSubPage = params.tgc * irDataCPSubPage;
+
+	    if(singlePrecision)
+	    {
+	        GetImageSinglePrecision(frameData, coefficients, (float) gain, (float) irDataCPSubPage, result);
+	        CorrectBadPixels(params, context.mode, result);
+	        return;
 	    }
 
-	    for( int pixelNumber = 0; pixelNumber < 768; pixelNumber++)
+	    for( int i = 0; i < pixels.length; i++)
 	    {
-	        ilPattern = pixelNumber / 32 - (pixelNumber / 64) * 2; 
-	        chessPattern = ilPattern ^ (pixelNumber - (pixelNumber/2)*2); 
-	        conversionPattern = ((pixelNumber + 2) / 4 - (pixelNumber + 3) / 4 + (pixelNumber + 1) / 4 - pixelNumber / 4) * (1 - 2 * ilPattern);
-	        
-	        if(mode == 0)
-	        {
-	          pattern = ilPattern; 
-	        }
-	        else 
+	        pixelNumber = pixels[i];
+
+	        irData = frameData[pixelNumber];
+	        if(irData > 32767)
 	        {
-	          pattern = chessPattern; 
-	        }
-	        
-	        if(pattern == frameData[833])
-	        {    
-	            irData = frameData[pixelNumber];
-	            if(irData > 32767)
-	            {
-	                irData = irData - 65536;
-	            }
-	            irData = irData * gain;
-	            
-	            irData = irData - params.offset[pixelNumber]*(1 + params.kta[pixelNumber]*(ta - 25))*(1 + params.kv[pixelNumber]*(vdd - 3.3));
-	            if(mode !=  params.calibrationModeEE)
-	            {
-	              irData = irData + params.ilChessC[2] * (2 * ilPattern - 1) - params.ilChessC[1] * conversionPattern; 
-	            }
-	            
-	            irData = irData - params.tgc * irDataCP[subPage];
-	            
-	            alphaCompensated = (params.alpha[pixelNumber] - params.tgc * params.cpAlpha[subPage])*(1 + params.KsTa * (ta - 25));
-	            
-	            image = irData/alphaCompensated;
-	            
-	            result[pixelNumber] = image;
+	            irData = irData - 65536;
 	        }
+	        int r = i * stride;
+	        irData = irData * gain - values[r + offsetAt] - irDataCPSubPage;
+
+	        image = irData/values[r + alphaAt];
+
+	        result[pixelNumber] = image;
 		}
-		
+
+	    CorrectBadPixels(params, context.mode, result);
 	}
 
 
 	void CalculateTo(int[] frameData, Params params, double emissivity, double tr, double[] result)
 	{
+	    GetFrameContext(frameData, params, frameContext);
+	    CalculateTo(frameData, params, frameContext, emissivity, tr, result);
+	}
 
-	    double vdd;
-	    double ta;
+	//context must be decoded from frameData with GetFrameContext
+	void CalculateTo(int[] frameData, Params params, FrameContext context, double emissivity, double tr, double[] result)
+	{
+
+	    double ta = context.ta;
 	    double ta4;
 	    double tr4;
 	    double taTr;
-	    double gain;
-		double[] irDataCP = new double[2];
+	    double gain = context.gain;
+	    double irDataCPSubPage;
 	    double irData;
 	    double alphaCompensated;
-	    int mode;
-	    int ilPattern;
-	    int chessPattern;
-	    int pattern;
-	    int conversionPattern;
+	    int pixelNumber;
 	    double Sx;
 	    double To;
-	    double[] alphaCorrR = new double[4];
+	    double[] alphaCorrR = params.alphaCorrR;
 	    int range;
-	    int subPage;
-	    
-	    subPage = frameData[833];
-	    vdd = GetVdd(frameData, params);
-	    ta = GetTa(frameData, params);
-	    ta4 = Math.pow((ta + 273.15), (double)4);
-	    tr4 = Math.pow((tr + 273.15), (double)4);
+	    int subPage = context.subPage;
+
+	    if(subPage != 0 && subPage != 1)
+	    {
+	        return;
+	    }
+	    if(fastMathIterations < 0)
+	    {
+	        ta4 = Math.pow((ta + 273.15), (double)4);
+	        tr4 = Math.pow((tr + 273.15), (double)4);
+	    }
+	    else
+	    {
+	        ta4 = FastMath.fourthPower(ta + 273.15);
+	        tr4 = FastMath.fourthPower(tr + 273.15);
+	    }
 	    taTr = tr4 - (tr4-ta4)/emissivity;
-	    
-	    alphaCorrR[0] = 1 / (1 + params.ksTo[0] * 40);
-	    alphaCorrR[1] = 1 ;
-	    alphaCorrR[2] = (1 + params.ksTo[2] * params.ct[2]);
-	    alphaCorrR[3] = alphaCorrR[2] * (1 + params.ksTo[3] * (params.ct[3] - params.ct[2]));
-	    
-	//------------------------- Gain calculation -----------------------------------    
-	    gain = frameData[778];
-	    if(gain > 32767)
+
+	    irDataCPSubPage = (subPage == 0) ? context.irDataCP0 : context.irDataCP1;
+
+	    //only pixels of current subpage
+	    CoefficientCache coefficients = getCoefficients(params, subPage, context.mode, ta, context.vdd);
+	    int[] pixels = coefficients.pixels;
+	    double[] values = coefficients.values;
+	    int stride = coefficients.stride;
+	    int offsetAt = CoefficientCache.OFFSET * coefficients.fieldStep;
+	    int alphaAt = CoefficientCache.ALPHA * coefficients.fieldStep;
+	    int alpha3At = CoefficientCache.ALPHA3 * coefficients.fieldStep;
+	    int alphaKsToAt = CoefficientCache.ALPHA_KSTO * coefficients.fieldStep;
+	    irDataCPSubPage = params.tgc * irDataCPSubPage;
+	    double invEmissivity = 1 / emissivity;
+
+	    if(singlePrecision)
 	    {
-	        gain = gain - 65536;
+	        CalculateToSinglePrecision(frameData, params, coefficients, (float) gain, (float) irDataCPSubPage, (float) invEmissivity, (float) taTr, result);
+	        CorrectBadPixels(params, context.mode, result);
+	        return;
 	    }
-	    
-	    gain = params.gainEE / gain; 
-	  
-	//------------------------- To calculation -------------------------------------    
-	    mode = (frameData[832] & 0x1000) >> 5;
-	    
-	    irDataCP[0] = frameData[776];  
-	    irDataCP[1] = frameData[808];
-	    for( int i = 0; i < 2; i++)
+
+	    for( int i = 0; i < pixels.length; i++)
 	    {
-	        if(irDataCP[i] > 32767)
+	        pixelNumber = pixels[i];
+
+	        irData = frameData[pixelNumber];
+	        if(irData > 32767)
 	        {
-	            irDataCP[i] = irDataCP[i] - 65536;
+	            irData = irData - 65536;
 	        }
-	        irDataCP[i] = irDataCP[i] * gain;
-	    }
-	    irDataCP[0] = irDataCP[0] - params.cpOffset[0] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
-	    if( mode ==  params.calibrationModeEE)
+	        int r = i * stride;
+	        irData = (irData * gain - values[r + offsetAt]) * invEmissivity - irDataCPSubPage;
+
+	        alphaCompensated = values[r + alphaAt];
+
+	        Sx = values[r + alpha3At] * (irData + alphaCompensated * taTr);
+	        Sx = fourthRoot(Sx) * params.ksTo[1];
+
+	        To = fourthRoot(irData/(values[r + alphaKsToAt] + Sx) + taTr) - 273.15;
+
+	        if(To < params.ct[1])
+	        {
+	            range = 0;
+	        }
+	        else if(To < params.ct[2])
+	        {
+	            range = 1;
+	        }
+	        else if(To < params.ct[3])
+	        {
+	            range = 2;
+	        }
+	        else
+	        {
+	            range = 3;
+	        }
+
+	        To = fourthRoot(irData / (alphaCompensated * alphaCorrR[range] * (1 + params.ksTo[range] * (To - params.ct[range]))) + taTr) - 273.15;
+
+	        result[pixelNumber] = To;
+		}
+
+	    CorrectBadPixels(params, context.mode, result);
+	}
+
+
+	//Replaces broken and outlier pixels with their neighbours, result should contain both subpages.
+	//Neighbours from the other subpage are from the previous frame. Neighbours that are NaN (not
+	//measured yet) are skipped, if none is left the pixel becomes NaN too.
+	static void CorrectBadPixels(Params params, int mode, double[] result)
+	{
+	    int[] neighbours = params.badPixelNeighbours[mode == 0 ? 0 : 1];
+	    double[] weights = params.badPixelWeights[mode == 0 ? 0 : 1];
+
+	    for(int i = 0; i < params.badPixelCount; i++)
 	    {
-	        irDataCP[1] = irDataCP[1] - params.cpOffset[1] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	        int n = i * BAD_PIXEL_NEIGHBOURS;
+	        double sum = 0;
+	        double weightSum = 0;
+	        for(int k = n; k < n + BAD_PIXEL_NEIGHBOURS; k++)
+	        {
+	            double value = result[neighbours[k]];
+	            if(weights[k] == 0 || Double.isNaN(value)) continue;
+	            sum += weights[k] * value;
+	            weightSum += weights[k];
+	        }
+	        result[params.badPixels[i]] = weightSum > 0 ? sum / weightSum : Double.NaN;
 	    }
-	    else
+	}
+
+	private void GetImageSinglePrecision(int[] frameData, CoefficientCache coefficients, float gain, float irDataCPSubPage, double[] result)
+	{
+	    int[] pixels = coefficients.pixels;
+	    float[] values = coefficients.valuesF;
+	    int stride = coefficients.stride;
+	    int offsetAt = CoefficientCache.OFFSET * coefficients.fieldStep;
+	    int alphaAt = CoefficientCache.ALPHA * coefficients.fieldStep;
+
+	    for( int i = 0; i < pixels.length; i++)
 	    {
-	      irDataCP[1] = irDataCP[1] - (params.cpOffset[1] + params.ilChessC[0]) * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+	        int pixelNumber = pixels[i];
+
+	        int raw = frameData[pixelNumber];
+	        if(raw > 32767)
+	        {
+	            raw = raw - 65536;
+	        }
+	        int r = i * stride;
+	        float irData = raw * gain - values[r + offsetAt] - irDataCPSubPage;
+
+	        result[pixelNumber] = irData / values[r + alphaAt];
 	    }
+	}
 
-	    for( int pixelNumber = 0; pixelNumber < 768; pixelNumber++)
+	private void CalculateToSinglePrecision(int[] frameData, Params params, CoefficientCache coefficients, float gain, float irDataCPSubPage, float invEmissivity, float taTr, double[] result)
+	{
+	    int[] pixels = coefficients.pixels;
+	    float[] values = coefficients.valuesF;
+	    int stride = coefficients.stride;
+	    int offsetAt = CoefficientCache.OFFSET * coefficients.fieldStep;
+	    int alphaAt = CoefficientCache.ALPHA * coefficients.fieldStep;
+	    int alpha3At = CoefficientCache.ALPHA3 * coefficients.fieldStep;
+	    int alphaKsToAt = CoefficientCache.ALPHA_KSTO * coefficients.fieldStep;
+
+	    float ksTo1 = (float) params.ksTo[1];
+	    float ct1 = params.ct[1], ct2 = params.ct[2], ct3 = params.ct[3];
+
+	    for( int i = 0; i < pixels.length; i++)
 	    {
-	        ilPattern = pixelNumber / 32 - (pixelNumber / 64) * 2; 
-	        chessPattern = ilPattern ^ (pixelNumber - (pixelNumber/2)*2); 
-	        conversionPattern = ((pixelNumber + 2) / 4 - (pixelNumber + 3) / 4 + (pixelNumber + 1) / 4 - pixelNumber / 4) * (1 - 2 * ilPattern);
-	        
-	        if(mode == 0)
+	        int pixelNumber = pixels[i];
+
+	        int raw = frameData[pixelNumber];
+	        if(raw > 32767)
 	        {
-	          pattern = ilPattern; 
+	            raw = raw - 65536;
 	        }
-	        else 
+	        int r = i * stride;
+	        float irData = (raw * gain - values[r + offsetAt]) * invEmissivity - irDataCPSubPage;
+
+	        float alpha = values[r + alphaAt];
+
+	        float Sx = values[r + alpha3At] * (irData + alpha * taTr);
+	        Sx = (float) fourthRoot(Sx) * ksTo1;
+
+	        float To = (float) fourthRoot(irData / (values[r + alphaKsToAt] + Sx) + taTr) - 273.15f;
+
+	        int range;
+	        if(To < ct1)
 	        {
-	          pattern = chessPattern; 
-	        }               
-	        
-	        if(pattern == frameData[833])
-	        {    
-	            irData = frameData[pixelNumber];
-	            if(irData > 32767)
-	            {
-	                irData = irData - 65536;
-	            }
-	            irData = irData * gain;
-	            
-	            irData = irData - params.offset[pixelNumber]*(1 + params.kta[pixelNumber]*(ta - 25))*(1 + params.kv[pixelNumber]*(vdd - 3.3));
-	            if(mode !=  params.calibrationModeEE)
-	            {
-	              irData = irData + params.ilChessC[2] * (2 * ilPattern - 1) - params.ilChessC[1] * conversionPattern; 
-	            }
-	            
-	            irData = irData / emissivity;
-	    
-	            irData = irData - params.tgc * irDataCP[subPage];
-	            
-	            alphaCompensated = (params.alpha[pixelNumber] - params.tgc * params.cpAlpha[subPage])*(1 + params.KsTa * (ta - 25));
-	            
-	            Sx = Math.pow((double)alphaCompensated, (double)3) * (irData + alphaCompensated * taTr);
-	            Sx = Math.sqrt(Math.sqrt(Sx)) * params.ksTo[1];
-	            
-	            To = Math.sqrt(Math.sqrt(irData/(alphaCompensated * (1 - params.ksTo[1] * 273.15) + Sx) + taTr)) - 273.15;
-	                    
-	            if(To < params.ct[1])
-	            {
-	                range = 0;
-	            }
-	            else if(To < params.ct[2])   
-	            {
-	                range = 1;            
-	            }   
-	            else if(To < params.ct[3])
-	            {
-	                range = 2;            
-	            }
-	            else
-	            {
-	                range = 3;            
-	            }      
-	            
-	            To = Math.sqrt(Math.sqrt(irData / (alphaCompensated * alphaCorrR[range] * (1 + params.ksTo[range] * (To - params.ct[range]))) + taTr)) - 273.15;
-	            
-	            result[pixelNumber] = To;
+	            range = 0;
 	        }
-		}
-		
+	        else if(To < ct2)
+	        {
+	            range = 1;
+	        }
+	        else if(To < ct3)
+	        {
+	            range = 2;
+	        }
+	        else
+	        {
+	            range = 3;
+	        }
+
+	        float alphaCorr = (float) params.alphaCorrR[range] * (1 + (float) params.ksTo[range] * (To - params.ct[range]));
+	        To = (float) fourthRoot(irData / (alpha * alphaCorr) + taTr) - 273.15f;
+
+	        result[pixelNumber] = To;
+	    }
 	}
 
 
@@ -487,6 +827,12 @@ class MLX90640 {
 	        }
 	        mlx90640.ksTo[i] = mlx90640.ksTo[i] / KsToScale;
 	    } 
+
+	    //sensitivity correction per temperature range, used by CalculateTo
+	    mlx90640.alphaCorrR[0] = 1 / (1 + mlx90640.ksTo[0] * 40);
+	    mlx90640.alphaCorrR[1] = 1 ;
+	    mlx90640.alphaCorrR[2] = (1 + mlx90640.ksTo[2] * mlx90640.ct[2]);
+	    mlx90640.alphaCorrR[3] = mlx90640.alphaCorrR[2] * (1 + mlx90640.ksTo[3] * (mlx90640.ct[3] - mlx90640.ct[2]));
 	}
 
 	//------------------------------------------------------------------------------
@@ -853,6 +1199,49 @@ class MLX90640 {
 
 	//------------------------------------------------------------------------------
 
+	//Chess mode: average of left, right, upper and lower pixel, interleaved mode: average of
+	//left and right pixel (same subpage). Unused slots get weight 0 and point to a used neighbour.
+	static void BuildBadPixelCorrection(Params mlx90640)
+	{
+	    int count = 0;
+	    for(int pixel : mlx90640.brokenPixels)
+	    {
+	        if(pixel < 768) mlx90640.badPixels[count++] = pixel;
+	    }
+	    for(int pixel : mlx90640.outlierPixels)
+	    {
+	        if(pixel < 768) mlx90640.badPixels[count++] = pixel;
+	    }
+	    mlx90640.badPixelCount = count;
+
+	    int[] candidates = new int[BAD_PIXEL_NEIGHBOURS];
+	    for(int i = 0; i < count; i++)
+	    {
+	        int pixel = mlx90640.badPixels[i];
+	        int row = pixel / 32;
+	        int column = pixel % 32;
+
+	        for(int mode = 0; mode < 2; mode++)
+	        {
+	            int found = 0;
+	            if(column > 0) candidates[found++] = pixel - 1;
+	            if(column < 31) candidates[found++] = pixel + 1;
+	            if(mode == 1)
+	            {
+	                if(row > 0) candidates[found++] = pixel - 32;
+	                if(row < 23) candidates[found++] = pixel + 32;
+	            }
+
+	            int n = i * BAD_PIXEL_NEIGHBOURS;
+	            for(int slot = 0; slot < BAD_PIXEL_NEIGHBOURS; slot++)
+	            {
+	                mlx90640.badPixelNeighbours[mode][n + slot] = slot < found ? candidates[slot] : candidates[0];
+	                mlx90640.badPixelWeights[mode][n + slot] = slot < found ? 1.0 / found : 0;
+	            }
+	        }
+	    }
+	}
+
 	int ExtractDeviatingPixels(int[] eeData, Params mlx90640)
 	{
 	    int pixCnt = 0;
@@ -69,7 +69,8 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
 
     IRView irView;
-    IRPicture irPicture = null;
+    //colors frames off the main thread, irView always shows its front picture
+    FrameRenderer frameRenderer = null;
     CameraView camera;
 
     ImageView imgTempSpectrum;
@@ -95,6 +96,8 @@ public class MainActivity extends AppCompatActivity {
         layoutRotateOnOrientation.disable();
         layoutRotateOnOrientation = null;
 
+        frameRenderer.quit();
+
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -136,8 +139,8 @@ public class MainActivity extends AppCompatActivity {
 
         //irView (extended ImageView)
         irView = findViewById(R.id.irView);
-        irPicture = new IRPicture(OTC.IR_WIDTH, OTC.IR_HEIGHT);
-        irView.setIRPicture(irPicture);
+        frameRenderer = new FrameRenderer(OTC.IR_WIDTH, OTC.IR_HEIGHT);
+        irView.setIRPicture(frameRenderer.getPicture());
 
         //rotate layout listener
         layoutRotateOnOrientation = new LayoutRotateOnOrientation();
@@ -149,7 +152,6 @@ public class MainActivity extends AppCompatActivity {
 
         // get imgTempSpectrum
         imgTempSpectrum = findViewById(R.id.imgTempSpectrum);
-        imgTempSpectrum.setImageBitmap(irPicture.getSpectrumBitmap());
 
         //get all views to rotate
         getAllRotatableViews(viewsToRotate, (ViewGroup) findViewById(R.id.layoutActivityMain));
@@ -161,32 +163,44 @@ public class MainActivity extends AppCompatActivity {
 
         //OTC
         otc = new OTC(this, new OTCStateListener());
-        otc.setResponseListener(new OTC.ResponseListener(){
+        otc.setFrameListener(new OTC.FrameListener(){
 
             @Override
-            public void onResponsePre(Protocol.RspStruct rsp) {
-                //do nothing
+            public void onFrame(ThermalFrame frame) {
+                //colored on render thread, views are updated in onFrameRendered
+                frameRenderer.submit(frame);
             }
 
             @Override
-            public void onResponsePost(Protocol.RspStruct rsp) {
-                if(rsp.responseCode == Protocol.RSP_GET_FRAME_DATA){
-
-                    //set temperatures and irView
-                    irPicture.updateTemperatureData(otc.getIrTemp());
-                    irView.update();
+            public boolean requiresMainThread() {
+                return false;
+            }
 
-                    //new min max avg temps available, update
-                    DecimalFormat df = new DecimalFormat("#.0");
-                    textMinIrTemp.setText(df.format(otc.getMinIrTemp()));
-                    textMaxIrTemp.setText(df.format(otc.getMaxIrTemp()));
-                    textAvgIrTemp.setText(df.format((otc.getMaxIrTemp() + otc.getMinIrTemp()) / 2.0 ));
+        });
 
-                    //Display temp spectrum according to template
-                    imgTempSpectrum.setImageBitmap(irView.getIRPicture().getSpectrumBitmap());
-                    imgTempSpectrum.invalidate();
+        frameRenderer.setListener((IRPicture picture, Bitmap spectrum) -> {
+
+            //set irView to the freshly rendered picture
+            irView.setIRPicture(picture);
+            irView.update();
+
+            //new min max avg temps available, update
+            //raw intensities aren't temperatures, labels are hidden
+            int labelVisibility = picture.isRawIntensity() ? View.INVISIBLE : View.VISIBLE;
+            textMinIrTemp.setVisibility(labelVisibility);
+            textMaxIrTemp.setVisibility(labelVisibility);
+            textAvgIrTemp.setVisibility(labelVisibility);
+            if(!picture.isRawIntensity()) {
+                DecimalFormat df = new DecimalFormat("#.0");
+                textMinIrTemp.setText(df.format(picture.getMinTemperature()));
+                textMaxIrTemp.setText(df.format(picture.getMaxTemperature()));
+                textAvgIrTemp.setText(df.format(picture.getMeanTemperature()));
+            }
 
-                }
+            //Display temp spectrum according to template, only if it changed
+            if(spectrum != null) {
+                imgTempSpectrum.setImageBitmap(spectrum);
+                imgTempSpectrum.invalidate();
             }
 
         });
@@ -327,10 +341,23 @@ public class MainActivity extends AppCompatActivity {
                 ir.put("height", irPicture.getHeight());
                 ir.put("temperature", new JSONArray(irPicture.getTemperatureData()));
                 ir.put("dynamic_range", irPicture.dynamicRange);
+                ir.put("raw_intensity", irPicture.isRawIntensity());
                 ir.put("custom_max_temperature", irPicture.customMaxTemperature);
                 ir.put("custom_min_temperature", irPicture.customMinTemperature);
                 ir.put("custom_temp_range", irPicture.customTemperatureRange);
                 ir.put("thermal_palette", irPicture.getThermalPalette().getClass().getName());
+                ir.put("upscaling", irPicture.getUpscaling().name());
+                ir.put("bitmap_scale", irPicture.getBitmapScale());
+
+                MLX90640.FrameContext frameContext = irPicture.getFrameContext();
+                JSONObject sensor = new JSONObject();
+                sensor.put("vdd", frameContext.vdd);
+                sensor.put("ta", frameContext.ta);
+                sensor.put("gain", frameContext.gain);
+                sensor.put("mode", frameContext.mode == 0 ? "interleaved" : "chess");
+                sensor.put("resolution", frameContext.resolution);
+                sensor.put("subpage", frameContext.subPage);
+                ir.put("sensor", sensor);
 
                 ByteArrayOutputStream pngCompressed = new ByteArrayOutputStream();
                 irPicture.getBitmap().compress(Bitmap.CompressFormat.PNG, 100, pngCompressed);
@@ -342,7 +369,10 @@ public class MainActivity extends AppCompatActivity {
                 } else {
                     temporaryCanvas.setDrawFilter(irView.noFilterPaint);
                 }
-                temporaryCanvas.drawBitmap(irPicture.getBitmap(), irTransformationMatrix, irPaint);
+                //bitmap might be upscaled
+                Matrix irBitmapMatrix = new Matrix(irTransformationMatrix);
+                irBitmapMatrix.preScale(1.0f / irPicture.getBitmapScale(), 1.0f / irPicture.getBitmapScale());
+                temporaryCanvas.drawBitmap(irPicture.getBitmap(), irBitmapMatrix, irPaint);
 
                 otc.put("ir_picture", ir);
 
@@ -521,25 +551,42 @@ public class MainActivity extends AppCompatActivity {
         //set emissivity
         otc.setEmissivity(emissivity);
 
+        //reflected temperature, in degrees below sensor temperature
+        otc.setTaShift(sharedPreferences.getInt("ta_shift", 8));
+
+        //temperatures or raw intensity
+        OTC.PipelineMode pipelineMode = OTC.PipelineMode.valueOf(sharedPreferences.getString("pipeline_mode", OTC.PipelineMode.RADIOMETRIC.name()));
+        otc.setPipelineMode(pipelineMode);
+
+        //noise filter
+        boolean temporalFilterEnabled = sharedPreferences.getBoolean("temporal_filter_enabled", false);
+        int temporalFilterStrength = sharedPreferences.getInt("temporal_filter_strength", 50);
+        otc.setTemporalFilter(temporalFilterEnabled, temporalFilterStrength / 100.0);
+
+        //faster calibration in float
+        otc.setSinglePrecisionCalibration(sharedPreferences.getBoolean("single_precision_enabled", false));
+
         //set current palette
         ThermalPalette selectedThermalPalette = ThermalPalette.getCurrentSelectedPalette(this);
         Log.d(TAG, "Setting thermal palette: " + selectedThermalPalette.toString());
-        irView.getIRPicture().setThermalPalette(selectedThermalPalette);
 
         //set dynamic range
         boolean dynamic_range_enabled = sharedPreferences.getBoolean("dynamic_range_enabled", false);
         Log.d(TAG, "Dynamic range enabled: " + dynamic_range_enabled);
-        irView.getIRPicture().setDynamicRange(dynamic_range_enabled);
 
         //set dynamic range min difference
         float dynamic_range_min_difference = sharedPreferences.getInt("dynamic_range_min_difference", 0);
         Log.d(TAG, "Dynamic range min difference: " + dynamic_range_min_difference);
-        irView.getIRPicture().setDynamicRangeMinDifference(dynamic_range_min_difference);
 
         //set custom range
-        irView.getIRPicture().setCustomTemperatureRange(sharedPreferences.getBoolean("custom_range_enabled", false));
-        irView.getIRPicture().setCustomMinTemperature(sharedPreferences.getInt("custom_range_min", -5));
-        irView.getIRPicture().setCustomMaxTemperature(sharedPreferences.getInt("custom_range_max", 50));
+        boolean customRangeEnabled = sharedPreferences.getBoolean("custom_range_enabled", false);
+        int customRangeMin = sharedPreferences.getInt("custom_range_min", -5);
+        int customRangeMax = sharedPreferences.getInt("custom_range_max", 50);
+
+        //interpolate temperatures instead of relying on bitmap filter
+        Upscaler.Mode upscaling = Upscaler.Mode.valueOf(sharedPreferences.getString("upscaling", Upscaler.Mode.NONE.name()));
+        int upscalingFactor = Integer.parseInt(sharedPreferences.getString("upscaling_factor", "8"));
+        Log.d(TAG, "Upscaling: " + upscaling + " x" + upscalingFactor);
 
         //enabled/disable max temp marker
         boolean maxTempMarkerEnabled = sharedPreferences.getBoolean("max_temperature_marker_enabled", false);
@@ -550,7 +597,18 @@ public class MainActivity extends AppCompatActivity {
         irView.setSearchAreaEnabled(sharedPreferences.getBoolean("search_area_enabled", false));
         int searchAreaSize = sharedPreferences.getInt("search_area_size", 3);
         irView.setSearchAreaSize(searchAreaSize);
-        irPicture.setSeachAreaSize(searchAreaSize);
+
+        //pictures are only touched on render thread
+        frameRenderer.updateSettings((IRPicture settings) -> {
+            settings.setThermalPalette(selectedThermalPalette);
+            settings.setDynamicRange(dynamic_range_enabled);
+            settings.setDynamicRangeMinDifference(dynamic_range_min_difference);
+            settings.setCustomTemperatureRange(customRangeEnabled);
+            settings.setCustomMinTemperature(customRangeMin);
+            settings.setCustomMaxTemperature(customRangeMax);
+            settings.setSeachAreaSize(searchAreaSize);
+            settings.setUpscaling(upscaling, upscalingFactor);
+        });
 
         //act on settings:
         //enable / disable camera
@@ -9,16 +9,22 @@ import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.widget.Toast;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class OTC {
 
@@ -34,12 +40,17 @@ class OTC {
     public static final int IR_SPECTRUM_WIDTH = 1000;
     public static final int IR_SPECTRUM_HEIGHT = 1;
 
-    private static double minIrTemp = 9999.0, maxIrTemp = -9999.0;
-
     private static double[] irTemp = new double[IR_WIDTH * IR_HEIGHT];
-    private static double[] irTempFlipped = new double[IR_WIDTH * IR_HEIGHT];
 
-    private static int taShift = 8;
+    //reflected temperature = Ta - taShift
+    private static volatile double taShift = 8;
+
+    //last raw frame of each subpage and its context, so temperatures can be recalculated
+    //(e.g. when emissivity changes) without waiting for the sensor. Decode thread only
+    private static final int[][] lastFrameData = new int[2][834];
+    private static final MLX90640.FrameContext[] lastFrameContext = { new MLX90640.FrameContext(), new MLX90640.FrameContext() };
+    private static final boolean[] lastFrameAvailable = new boolean[2];
+    private static int lastSubPage = 0;
 
     private Context ctx = null;
 
@@ -47,14 +58,39 @@ class OTC {
     private static MLX90640 mlxapi = new MLX90640();
     private static MLX90640.Params mlxparams = new MLX90640.Params();
 
-    private static boolean parametersAvailable = false;
+    private static volatile boolean parametersAvailable = false;
 
-    private static double emissivity = 0.9;
+    //parameters of the last connected sensor are kept on disk, accessed on decode thread only
+    private static CalibrationStore calibrationStore = null;
+    private static long parametersHash = 0;
+
+    private static volatile double emissivity = 0.9;
 
     //Usb private variables
     private static UsbService usbService;
     private static MyHandler mHandler = null;
 
+    //serial data is decoded and calibrated on this thread, results are posted to main thread
+    private static HandlerThread decodeThread = null;
+    private static Handler mainHandler = null;
+
+    private static ThermalFrame.Pool framePool = new ThermalFrame.Pool();
+
+    //frames waiting for main thread listeners. If main thread is slower than the sensor,
+    //the oldest waiting frame is dropped, so displayed latency stays bounded
+    private static FrameMailbox<ThermalFrame> mainThreadMailbox = new FrameMailbox<>(1, framePool::release);
+    private static AtomicBoolean mainThreadDrainScheduled = new AtomicBoolean(false);
+
+    //RAW_INTENSITY skips temperature calculation (MLX90640.GetImage), for highest refresh rates
+    enum PipelineMode {
+        RADIOMETRIC, RAW_INTENSITY
+    }
+    private static volatile PipelineMode pipelineMode = PipelineMode.RADIOMETRIC;
+
+    //noise filter for temperatures, decode thread only
+    private static final TemporalFilter temporalFilter = new TemporalFilter(IR_WIDTH * IR_HEIGHT);
+    private static boolean temporalFilterEnabled = false;
+
     enum UsbState {
         CONNECTED, DISCONNECTED
     }
@@ -82,14 +118,18 @@ class OTC {
         Protocol.Resolution resolution;
     }
 
+    //called on main thread
     interface FirmwareVersionListener {
         void firmwareVersion(Protocol.FirmwareVersion firmwareVerion);
     }
-    ArrayList<FirmwareVersionListener> fwListener = new ArrayList<>();
+    List<FirmwareVersionListener> fwListener = new CopyOnWriteArrayList<>();
 
+    //rsp is returned to the protocol's pool after listeners are called, don't keep a reference to it
+    //listeners are called on the decode thread, unless requiresMainThread returns true
     interface ResponseListener{
         void onResponsePre(Protocol.RspStruct rsp);
         void onResponsePost(Protocol.RspStruct rsp);
+        boolean requiresMainThread();
     }
     ResponseListener responseListener = null;
 
@@ -97,6 +137,18 @@ class OTC {
         responseListener = rl;
     }
 
+    //frame is returned to the pool after listeners are called, don't keep a reference to it
+    //listeners are called on the decode thread, unless requiresMainThread returns true
+    interface FrameListener{
+        void onFrame(ThermalFrame frame);
+        boolean requiresMainThread();
+    }
+    FrameListener frameListener = null;
+
+    void setFrameListener(FrameListener fl){
+        frameListener = fl;
+    }
+
 
     interface StateListener {
         void onStateChanged(OTCState otcState, UsbState usbState);
@@ -104,7 +156,8 @@ class OTC {
     StateListener stateListener = null;
 
 
-    private static ArrayList<WeakReference<OTC>> objectReferences = new ArrayList<>();
+    //iterated on decode thread, while new OTC objects are created on main thread
+    private static List<WeakReference<OTC>> objectReferences = new CopyOnWriteArrayList<>();
 
     public OTC(Context ctx, StateListener stateListener){
         //add to pool of OTC objects.
@@ -121,15 +174,10 @@ class OTC {
             protocol = new Protocol(new Protocol.ISender() {
                 @Override
                 public void sendBytes(byte[] bytesToSend) {
-                    String test = "[";
-                    for (int i = 0; i < bytesToSend.length; i++) {
-                        if (i != 0) {
-                            test += " ,";
-                        }
-                        test += bytesToSend[i];
+                    Log.d(TAG, "About to send " + bytesToSend.length + " bytes");
+                    if(Log.isLoggable(TAG, Log.VERBOSE)){
+                        Log.v(TAG, Arrays.toString(bytesToSend));
                     }
-                    test += "]";
-                    Log.d("OTC", "About to send " + bytesToSend.length + " = " + test);
                     if (usbService != null) {
                         usbService.write(bytesToSend);
                     }
@@ -145,9 +193,31 @@ class OTC {
             });
         }
 
-        //create usb serial connection
+        //create usb serial connection, received data is handled on decode thread
         if(mHandler == null){
-            mHandler = new MyHandler(protocol);
+            decodeThread = new HandlerThread("OTC-Decode", Process.THREAD_PRIORITY_DISPLAY);
+            decodeThread.start();
+            mHandler = new MyHandler(decodeThread.getLooper(), protocol);
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        //load stored parameters, so frames can be calibrated before the EEPROM dump arrives
+        if(calibrationStore == null){
+            calibrationStore = new CalibrationStore(ctx.getApplicationContext().getFilesDir());
+            mHandler.post(OTC::loadStoredParameters);
+        }
+    }
+
+    //runs on decode thread
+    private static void loadStoredParameters(){
+        if(parametersAvailable) return;
+
+        CalibrationStore.Entry entry = calibrationStore.load();
+        if(entry != null){
+            mlxparams = entry.params;
+            parametersHash = entry.eeHash;
+            parametersAvailable = true;
+            Log.d(TAG, "Using stored parameters, EEPROM hash = " + Long.toHexString(parametersHash));
         }
     }
 
@@ -267,14 +337,62 @@ class OTC {
         }
     }
 
+    //recalculates the last frame, so paused or frozen images are updated immediately
     public void setEmissivity(double emissivity){
-        this.emissivity = emissivity;
+        if(OTC.emissivity != emissivity){
+            OTC.emissivity = emissivity;
+            mHandler.post(OTC::recalculateLastFrame);
+        }
+    }
+
+    public void setTaShift(double taShift){
+        if(OTC.taShift != taShift){
+            OTC.taShift = taShift;
+            mHandler.post(OTC::recalculateLastFrame);
+        }
+    }
+
+    public double getTaShift(){
+        return taShift;
+    }
+
+    //last frame is recalculated in the new mode, so switching is seamless
+    public void setPipelineMode(PipelineMode mode){
+        if(pipelineMode != mode){
+            pipelineMode = mode;
+            mHandler.post(OTC::recalculateLastFrame);
+        }
+    }
+
+    public PipelineMode getPipelineMode(){
+        return pipelineMode;
+    }
+
+    //strength 0 (none) to 0.95 (strongest)
+    public void setTemporalFilter(boolean enabled, double strength){
+        mHandler.post(() -> {
+            if(temporalFilterEnabled != enabled){
+                temporalFilter.reset();
+            }
+            temporalFilterEnabled = enabled;
+            temporalFilter.setStrength(strength);
+        });
     }
 
     public double getEmissivity(){
         return emissivity;
     }
 
+    //calibrate in float instead of double, applied from the next frame on
+    public void setSinglePrecisionCalibration(boolean enabled){
+        mHandler.post(() -> mlxapi.setSinglePrecision(enabled));
+    }
+
+    //approximate roots within maxTemperatureError [C], 0 for exact calculation
+    public void setFastMathCalibration(double maxTemperatureError){
+        mHandler.post(() -> mlxapi.setFastMath(maxTemperatureError));
+    }
+
     private void startService(Class<?> service, ServiceConnection serviceConnection, Bundle extras) {
         if (!UsbService.SERVICE_CONNECTED) {
             Intent startService = new Intent(ctx, service);
@@ -303,12 +421,14 @@ class OTC {
     }
 
     /*
-     * This handler will be passed to UsbService. Data received from serial port is displayed through this handler
+     * This handler will be passed to UsbService. Data received from serial port is decoded through this handler,
+     * it runs on decode thread, not on main thread
      */
     private static class MyHandler extends Handler {
         private final WeakReference<Protocol> mProtocol;
 
-        public MyHandler(Protocol protocol) {
+        public MyHandler(Looper looper, Protocol protocol) {
+            super(looper);
             mProtocol = new WeakReference<>(protocol);
         }
 
@@ -327,10 +447,7 @@ class OTC {
 
 
     public void jumpToBootloader(){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_JUMP_TO_BOOTLOADER;
-        cmd.dataLength = 0;
-        protocol.sendCommand(cmd);
+        protocol.sendCommand(Protocol.CMD_JUMP_TO_BOOTLOADER);
     }
 
     public void getFirmwareVersion(FirmwareVersionListener listener){
@@ -355,130 +472,107 @@ class OTC {
 
     public void sendSettings(Settings settings){
 
-        //initiate sequence of commands
-        //request EE
-        requestDumpEE();
-
-        //set refresh rate
-        setRefreshRate(settings.refreshRate);
-
-        //set resolution
-        setResolution(settings.resolution);
-
-        //set ScanMode
-        setScanMode(settings.scanMode);
-
-        //enable auto frame sending
-        setAutoFrameSending(true);
-
-    }
-
-    //2d temp datat
-    static double[][] tempData2D = new double[OTC.IR_HEIGHT][OTC.IR_WIDTH];
+        //initiate sequence of commands, sent with one write
+        protocol.newBatch()
+                //request EE
+                .add(Protocol.CMD_DUMP_EE)
+                //set refresh rate
+                .add(Protocol.CMD_SET_REFRESH_RATE, settings.refreshRate.getValue())
+                //set resolution
+                .add(Protocol.CMD_SET_RESOLUTION, settings.resolution.getValue())
+                //set ScanMode
+                .add(Protocol.CMD_SET_MODE, settings.scanMode.getValue())
+                //enable auto frame sending
+                .add(Protocol.CMD_SET_AUTO_FRAME_DATA_SENDING, 1)
+                .send();
 
-    //returns ir temperature data [height][width]
-    public double[][] getIrTemp(){
-        return tempData2D;
     }
 
-    public double getMinIrTemp(){
-        return minIrTemp;
-    }
-    public double getMaxIrTemp(){
-        return maxIrTemp;
-    }
-
-
     private void setAutoFrameSending(boolean enabled){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_SET_AUTO_FRAME_DATA_SENDING;
-        cmd.dataLength = 1;
-
-        if(enabled){
-            //send auto frame data enabled command
-            cmd.data.add(1);
-        }else{
-            //send auto frame data disabled command
-            cmd.data.add(0);
-        }
-
-        protocol.sendCommand(cmd);
+        //send auto frame data enabled / disabled command
+        protocol.sendCommand(Protocol.CMD_SET_AUTO_FRAME_DATA_SENDING, enabled ? 1 : 0);
     }
 
 
-    private void setRefreshRate(Protocol.RefreshRate refreshRate){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_SET_REFRESH_RATE;
-        cmd.dataLength = 1;
-
-        cmd.data.add(refreshRate.getValue());
-
-        protocol.sendCommand(cmd);
+    private void requestDumpEE(){
+        protocol.sendCommand(Protocol.CMD_DUMP_EE);
     }
 
-    private void setResolution(Protocol.Resolution resolution){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_SET_RESOLUTION;
-        cmd.dataLength = 1;
+    private void requestFirmwareVersion(){
+        protocol.sendCommand(Protocol.CMD_GET_FIRMWARE_VERSION);
+    }
 
-        cmd.data.add(resolution.getValue());
+    //runs on decode thread, updates pixels of the frame's subpage in irTemp
+    private static void calculate(int[] frameData, MLX90640.FrameContext context, PipelineMode mode){
+        if(mode == PipelineMode.RAW_INTENSITY){
+            mlxapi.GetImage(frameData, mlxparams, context, irTemp);
+        } else {
+            mlxapi.CalculateTo(frameData, mlxparams, context, emissivity, context.ta - taShift, irTemp);
 
-        protocol.sendCommand(cmd);
+            //reset threshold is in degrees, so intensities aren't filtered
+            if(temporalFilterEnabled && (context.subPage == 0 || context.subPage == 1)){
+                temporalFilter.apply(irTemp, MLX90640.SUBPAGE_PIXELS[context.mode == 0 ? 0 : 1][context.subPage]);
+            }
+        }
     }
 
-    private void setScanMode(Protocol.ScanMode scanMode){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_SET_MODE;
-        cmd.dataLength = 1;
-
-        cmd.data.add(scanMode.getValue());
+    //runs on decode thread, calculates both stored subpages again with current pipeline mode, emissivity and taShift
+    private static void recalculateLastFrame(){
+        if(!parametersAvailable || !lastFrameAvailable[lastSubPage]) return;
 
-        protocol.sendCommand(cmd);
-    }
+        PipelineMode mode = pipelineMode;
 
-    private void requestDumpEE(){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_DUMP_EE;
-        cmd.dataLength = 0;
+        //settings changed, filtered history no longer matches
+        temporalFilter.reset();
 
-        protocol.sendCommand(cmd);
-    }
+        //older subpage first, so the latest one is on top
+        int olderSubPage = 1 - lastSubPage;
+        if(lastFrameAvailable[olderSubPage]){
+            calculate(lastFrameData[olderSubPage], lastFrameContext[olderSubPage], mode);
+        }
+        calculate(lastFrameData[lastSubPage], lastFrameContext[lastSubPage], mode);
 
-    private void requestFirmwareVersion(){
-        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
-        cmd.commandCode = Protocol.CMD_GET_FIRMWARE_VERSION;
-        cmd.dataLength = 0;
-        protocol.sendCommand(cmd);
+        ThermalFrame frame = framePool.obtain();
+        frame.context.set(lastFrameContext[lastSubPage]);
+        frame.pipelineMode = mode;
+        frame.setTemperatures(irTemp);
+        notifyFrameListeners(frame);
     }
 
+    //runs on decode thread
     public static void handleResponse(Protocol.RspStruct rsp) {
 
-        for(WeakReference<OTC> wrOtc : objectReferences){
-            OTC ref = wrOtc.get();
-            if(ref != null){
-                if(ref.responseListener != null) {
-                    ref.responseListener.onResponsePre(rsp);
-                }
-            }
-        }
+        boolean postedToMainThread = notifyResponseListeners(rsp, true);
 
 
         switch (rsp.responseCode) {
             case Protocol.RSP_PING: //PING
-                if(rsp.data.size() == 1) {
-                    int pong = rsp.data.get(0);
+                if(rsp.dataLength == 1) {
+                    int pong = rsp.data[0] & 0xFF;
                     Log.d("PONG", "Pong = " + pong);
                 }
                 break;
 
             case Protocol.RSP_DUMP_EE: //DumpEE
 
-                //eeDump are 16bit values, so we combine 2 bytes together
-                int[] eedump = new int[832];
-                for(int i = 0; i<832; i++){
-                    eedump[i] = ((rsp.data.get(i*2 + 0) & 0xFF) << 8) | ((rsp.data.get(i*2 + 1) & 0xFF));
+                if(rsp.getWordCount() < 832){
+                    Log.e("OTC","DumpEE, response too short: " + rsp.dataLength);
+                    break;
+                }
+
+                //eeDump are 16bit values
+                int[] eedump = rsp.getWords();
+
+                //parameters of this sensor are already in use
+                long eeHash = CalibrationStore.hash(eedump);
+                if(parametersAvailable && eeHash == parametersHash){
+                    break;
                 }
 
+                //stored raw frames belong to another sensor
+                lastFrameAvailable[0] = false;
+                lastFrameAvailable[1] = false;
+
                 //extract parameters
                 int error = mlxapi.ExtractParameters(eedump, mlxparams);
 
@@ -486,54 +580,58 @@ class OTC {
                     Log.e("OTC","DumpEE, error code = " + error);
                 } else {
                     //extraction successful
+                    parametersHash = eeHash;
                     parametersAvailable = true;
+                    if(calibrationStore != null){
+                        calibrationStore.save(eeHash, mlxparams);
+                    }
                 }
 
                 break;
 
             case Protocol.RSP_GET_FRAME_DATA: //GetFrameData
 
-                //framedata are 16bit values, so we combine 2 bytes together
-                int[] frameData = new int[834];
-                for(int i = 0; i<834; i++){
-                    frameData[i] = ((rsp.data.get(i*2 + 0) & 0xFF) << 8) | ((rsp.data.get(i*2 + 1) & 0xFF));
+                if(rsp.getWordCount() < 834){
+                    Log.e("OTC","GetFrameData, response too short: " + rsp.dataLength);
+                    break;
                 }
 
-                //Log.d("GetFrameData", "rsp.data.size() = " + rsp.data.size() + ", rsp.dataLength = " + rsp.dataLength);
-
+                //can't calibrate yet, wait for EEPROM dump
+                if(!parametersAvailable){
+                    break;
+                }
 
-                //Get Subpage number first
-                int subpage = mlxapi.GetSubPageNumber(frameData);
+                //framedata are 16bit values
+                int[] frameData = rsp.getWords();
 
-                //Get scan mode (0 = interleaved, 1 chessmode)
-                //TODO get scanmode from settings
-                Protocol.ScanMode scanMode = Protocol.ScanMode.CHESS;
+                //Log.d("GetFrameData", "rsp.data.size() = " + rsp.data.size() + ", rsp.dataLength = " + rsp.dataLength);
 
-                double tr = mlxapi.GetTa(frameData, mlxparams) - taShift;
 
-                mlxapi.CalculateTo(frameData, mlxparams, emissivity, tr, irTemp);
+                ThermalFrame frame = framePool.obtain();
 
-                //flip  the temperature
-                for(int y = 0; y<IR_HEIGHT; y++){
-                    for(int x = 0; x<IR_WIDTH; x++){
-                        irTempFlipped[x + (y * IR_WIDTH)] = irTemp[IR_WIDTH - 1 - x + (y * IR_WIDTH)];
-                    }
+                //decode subpage, scan mode, Vdd, Ta, ... once for all calculations
+                mlxapi.GetFrameContext(frameData, mlxparams, frame.context);
+                if(Log.isLoggable(TAG, Log.VERBOSE)){
+                    Log.v(TAG, "Frame: " + frame.context);
                 }
 
-                //2d
-                for(int i = 0; i<OTC.IR_HEIGHT * OTC.IR_WIDTH; i++){
-                    tempData2D[i / OTC.IR_WIDTH][i % OTC.IR_WIDTH] = irTempFlipped[i];
-                }
+                frame.pipelineMode = pipelineMode;
+                calculate(frameData, frame.context, frame.pipelineMode);
 
-                //get min and max temps
+                //keep raw data for recalculation
+                int subPage = frame.context.subPage;
+                if(subPage == 0 || subPage == 1){
+                    System.arraycopy(frameData, 0, lastFrameData[subPage], 0, lastFrameData[subPage].length);
+                    lastFrameContext[subPage].set(frame.context);
+                    lastFrameAvailable[subPage] = true;
+                    lastSubPage = subPage;
+                }
 
-                minIrTemp = irTempFlipped[0];
-                maxIrTemp = irTempFlipped[0];
+                //flip into display orientation and get min, max and mean
+                frame.setTemperatures(irTemp);
 
-                for(int i = 1; i<IR_WIDTH * IR_HEIGHT; i++){
-                    minIrTemp = Math.min(minIrTemp, irTempFlipped[i]);
-                    maxIrTemp = Math.max(maxIrTemp, irTempFlipped[i]);
-                }
+                //hand frame over to listeners
+                notifyFrameListeners(frame);
 
                 break;
 
@@ -556,17 +654,19 @@ class OTC {
 
             case Protocol.RSP_GET_FIRMWARE_VERSION :
                 //parse response
-                Protocol.FirmwareVersion deviceVersion = Protocol.FirmwareVersion.parse(rsp.data);
-
-                for(WeakReference<OTC> wrOtc : objectReferences){
-                    OTC ref = wrOtc.get();
-                    if(ref != null){
-                        for(FirmwareVersionListener listener :  ref.fwListener){
-                            listener.firmwareVersion(deviceVersion);
+                Protocol.FirmwareVersion deviceVersion = Protocol.FirmwareVersion.parse(rsp);
+
+                mainHandler.post(() -> {
+                    for(WeakReference<OTC> wrOtc : objectReferences){
+                        OTC ref = wrOtc.get();
+                        if(ref != null){
+                            for(FirmwareVersionListener listener :  ref.fwListener){
+                                listener.firmwareVersion(deviceVersion);
+                            }
+                            ref.fwListener.clear();
                         }
-                        ref.fwListener.clear();
                     }
-                }
+                });
 
 
                 Log.d("GetFirmwareVersion","Device version = " + deviceVersion);
@@ -579,15 +679,90 @@ class OTC {
                 break;
         }
 
+        postedToMainThread |= notifyResponseListeners(rsp, false);
+
+        //return response to pool, after main thread listeners if there are any
+        if(postedToMainThread){
+            mainHandler.post(() -> protocol.releaseResponse(rsp));
+        } else {
+            protocol.releaseResponse(rsp);
+        }
+
+    }
+
+    //calls listeners on decode thread or posts them to main thread. Returns true if any was posted
+    private static boolean notifyResponseListeners(Protocol.RspStruct rsp, boolean pre){
+        boolean posted = false;
+        for(WeakReference<OTC> wrOtc : objectReferences){
+            OTC ref = wrOtc.get();
+            if(ref == null || ref.responseListener == null) continue;
+
+            ResponseListener listener = ref.responseListener;
+            if(listener.requiresMainThread()){
+                mainHandler.post(() -> {
+                    if(pre) listener.onResponsePre(rsp);
+                    else listener.onResponsePost(rsp);
+                });
+                posted = true;
+            } else {
+                if(pre) listener.onResponsePre(rsp);
+                else listener.onResponsePost(rsp);
+            }
+        }
+        return posted;
+    }
+
+    //calls listeners on decode thread or hands the frame over to main thread, then returns frame to pool
+    private static void notifyFrameListeners(ThermalFrame frame){
+        boolean mainThreadListeners = false;
         for(WeakReference<OTC> wrOtc : objectReferences){
             OTC ref = wrOtc.get();
-            if(ref != null){
-                if(ref.responseListener != null) {
-                    ref.responseListener.onResponsePost(rsp);
+            if(ref == null || ref.frameListener == null) continue;
+
+            if(ref.frameListener.requiresMainThread()){
+                mainThreadListeners = true;
+            } else {
+                ref.frameListener.onFrame(frame);
+            }
+        }
+
+        if(!mainThreadListeners){
+            framePool.release(frame);
+            return;
+        }
+
+        //replace unconsumed frames if main thread didn't keep up, they go back to the pool
+        mainThreadMailbox.offer(frame);
+
+        //only one drain pending at a time, it delivers whatever is in mailbox
+        if(mainThreadDrainScheduled.compareAndSet(false, true)){
+            mainHandler.post(drainMainThreadMailbox);
+        }
+    }
+
+    private static final Runnable drainMainThreadMailbox = () -> {
+        mainThreadDrainScheduled.set(false);
+
+        ThermalFrame frame;
+        while((frame = mainThreadMailbox.poll()) != null){
+            for(WeakReference<OTC> wrOtc : objectReferences){
+                OTC ref = wrOtc.get();
+                if(ref != null && ref.frameListener != null && ref.frameListener.requiresMainThread()){
+                    ref.frameListener.onFrame(frame);
                 }
             }
+            framePool.release(frame);
         }
+    };
+
+    //number of frames that waiting main thread listeners never saw
+    public long getDroppedFrameCount(){
+        return mainThreadMailbox.getDroppedCount();
+    }
 
+    //how many frames may wait for main thread listeners before the oldest is dropped
+    public void setFrameQueueDepth(int depth){
+        mainThreadMailbox.setDepth(depth);
     }
 
 
@@ -1,7 +1,5 @@
 package com.themarpe.openthermalcamera.Palette;
 
-import android.graphics.Color;
-
 public class DarkHotPalette extends ThermalPalette {
 
 
@@ -16,16 +14,11 @@ public class DarkHotPalette extends ThermalPalette {
     }
 
     @Override
-    public int temperatureToColor(double temperature, double minTemperature, double maxTemperature) {
-
-        double tempPercent = (temperature - minTemperature) / (maxTemperature - minTemperature);
-        if(tempPercent > 1.0) tempPercent = 1.0;
-        else if(tempPercent < 0.0) tempPercent = 0.0;
+    protected int fractionToColor(double fraction) {
 
-        tempPercent = 1.0 - tempPercent;
-        int darkLevel = (int) Math.round(tempPercent * 255);
+        int darkLevel = (int) Math.round((1.0 - fraction) * 255);
 
-        return Color.argb(255, darkLevel, darkLevel, darkLevel);
+        return 0xFF000000 | darkLevel << 16 | darkLevel << 8 | darkLevel;
 
     }
 }
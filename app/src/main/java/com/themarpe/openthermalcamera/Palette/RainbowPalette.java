@@ -74,16 +74,6 @@ public class RainbowPalette extends ThermalPalette {
                     0xac000f,0xab000f,0xab0010,0xaa0011,0xaa0012,0xa90013,0xa90014,0xa80015,0xa80016,0xa70017,0xa70018,0xa60019,0xa6001a,0xa5001b,0xa5001c,0xa4001d};
 
 
-    private static int convert(double temperature, double minimumTemperature, double maximimumTemperature){
-        //map to 0-1023 (inclusive)
-        int lookup = (int) Math.round(((temperature - minimumTemperature) / (maximimumTemperature - minimumTemperature)) * 1023);
-        lookup = Math.min(lookup, 1023);
-        lookup = Math.max(lookup, 0);
-
-        return (lookupTable[lookup] | 0xFF << 24);
-
-    }
-
     @Override
     public double getDefaultMinTemperature() {
         return -5.0;
@@ -96,8 +86,9 @@ public class RainbowPalette extends ThermalPalette {
 
     @ColorInt
     @Override
-    public int temperatureToColor(double temperature, double min, double max) {
-        return convert(temperature, min, max);
+    protected int fractionToColor(double fraction) {
+        //the lookup table already has the compiled palette size
+        return lookupTable[(int) Math.round(fraction * (lookupTable.length - 1))] | 0xFF << 24;
     }
 
 }
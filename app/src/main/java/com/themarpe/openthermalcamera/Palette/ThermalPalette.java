@@ -23,14 +23,66 @@ public abstract class ThermalPalette {
 
     }
 
+    //number of colors every palette is compiled into
+    public static final int LOOKUP_TABLE_SIZE = 1024;
+
+    //compiled ARGB colors, built lazily from fractionToColor. Volatile, as upscaler threads
+    //may look colors up concurrently, a filled table is published only after it is complete
+    private volatile int[] compiledColors;
+
     abstract public double getDefaultMinTemperature();
     abstract public double getDefaultMaxTemperature();
 
+    //color for a position in the palette, 0.0 = coldest, 1.0 = hottest
+    //only used when compiling the lookup table
+    @ColorInt
+    protected abstract int fractionToColor(double fraction);
+
+    private int[] getLookupTable(){
+        int[] table = compiledColors;
+        if(table == null){
+            table = new int[LOOKUP_TABLE_SIZE];
+            for(int i = 0; i < LOOKUP_TABLE_SIZE; i++){
+                table[i] = fractionToColor(i / (double) (LOOKUP_TABLE_SIZE - 1));
+            }
+            compiledColors = table;
+        }
+        return table;
+    }
+
     @ColorInt
     public int temperatureToColor(double temperature) {
         return temperatureToColor(temperature, getDefaultMinTemperature(), getDefaultMaxTemperature());
     }
 
-    public abstract int temperatureToColor(double temperature, double minTemperature, double maxTemperature);
+    //position of temperature in the lookup table, rounded half up, not clamped
+    public static int getLookupPosition(double temperature, double minTemperature, double maxTemperature) {
+        return (int) Math.floor((temperature - minTemperature) * ((LOOKUP_TABLE_SIZE - 1) / (maxTemperature - minTemperature)) + 0.5);
+    }
+
+    //same rounding as getLookupPosition, clamped to the table. position already has 0.5 added
+    private static int toIndex(double position) {
+        if(position < 1) return 0;
+        if(position >= LOOKUP_TABLE_SIZE) return LOOKUP_TABLE_SIZE - 1;
+        return (int) position;
+    }
+
+    @ColorInt
+    public int temperatureToColor(double temperature, double minTemperature, double maxTemperature) {
+        return getLookupTable()[toIndex((temperature - minTemperature) * ((LOOKUP_TABLE_SIZE - 1) / (maxTemperature - minTemperature)) + 0.5)];
+    }
+
+    //maps length temperatures starting at offset into colors starting at colorsOffset
+    public void temperaturesToColors(double[] temperatures, int offset, int length, double minTemperature, double maxTemperature, int[] colors, int colorsOffset) {
+        int[] table = getLookupTable();
+        double scale = (LOOKUP_TABLE_SIZE - 1) / (maxTemperature - minTemperature);
+        for(int i = 0; i < length; i++){
+            colors[colorsOffset + i] = table[toIndex((temperatures[offset + i] - minTemperature) * scale + 0.5)];
+        }
+    }
+
+    public void temperaturesToColors(double[] temperatures, int offset, int length, int[] colors, int colorsOffset) {
+        temperaturesToColors(temperatures, offset, length, getDefaultMinTemperature(), getDefaultMaxTemperature(), colors, colorsOffset);
+    }
 
 }
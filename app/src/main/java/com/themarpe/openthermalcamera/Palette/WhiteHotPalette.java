@@ -1,7 +1,5 @@
 package com.themarpe.openthermalcamera.Palette;
 
-import android.graphics.Color;
-
 public class WhiteHotPalette extends ThermalPalette {
 
 
@@ -16,15 +14,11 @@ public class WhiteHotPalette extends ThermalPalette {
     }
 
     @Override
-    public int temperatureToColor(double temperature, double minTemperature, double maxTemperature) {
-
-        double tempPercent = (temperature - minTemperature) / (maxTemperature - minTemperature);
-        if(tempPercent > 1.0) tempPercent = 1.0;
-        else if(tempPercent < 0.0) tempPercent = 0.0;
+    protected int fractionToColor(double fraction) {
 
-        int whiteLevel = (int) Math.round(tempPercent * 255);
+        int whiteLevel = (int) Math.round(fraction * 255);
 
-        return Color.argb(255, whiteLevel, whiteLevel, whiteLevel);
+        return 0xFF000000 | whiteLevel << 16 | whiteLevel << 8 | whiteLevel;
 
     }
 }
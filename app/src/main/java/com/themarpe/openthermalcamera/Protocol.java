@@ -1,7 +1,7 @@
 package com.themarpe.openthermalcamera;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Queue;
 
 class Protocol {
@@ -48,7 +48,7 @@ class Protocol {
 	public static class CmdStruct{
 		int commandCode;
 		int dataLength;
-		ArrayList<Integer> data = new ArrayList<>();
+		byte[] data = new byte[0];
 	}
 
 
@@ -79,7 +79,70 @@ class Protocol {
 		int responseCode;
 		int dataCode;
 		int dataLength;
-		ArrayList<Integer> data = new ArrayList<>();
+		//payload bytes, only first dataLength bytes are valid
+		byte[] data = new byte[0];
+
+		//payload as unsigned big endian 16bit words (eeprom dump, frame data)
+		private int[] words = new int[0];
+		private boolean wordsDecoded = false;
+
+		//returns payload as words, decoded once per response. Only first dataLength / 2 words are valid
+		int[] getWords(){
+			if(!wordsDecoded){
+				int wordCount = dataLength / 2;
+				if(words.length < wordCount){
+					words = new int[wordCount];
+				}
+				decodeWords(data, 0, words, wordCount);
+				wordsDecoded = true;
+			}
+			return words;
+		}
+
+		int getWordCount(){
+			return dataLength / 2;
+		}
+	}
+
+	//converts big endian byte pairs to unsigned 16bit words
+	static void decodeWords(byte[] src, int srcOffset, int[] dst, int count){
+		for(int i = 0, b = srcOffset; i < count; i++, b += 2){
+			dst[i] = ((src[b] & 0xFF) << 8) | (src[b + 1] & 0xFF);
+		}
+	}
+
+	//Pool of responses, so no new RspStruct and payload has to be allocated for every message.
+	//Responses are taken by the decoder and returned by the consumer with releaseResponse.
+	static class ResponsePool {
+		static final int MAX_POOLED = 8;
+		private final ArrayDeque<RspStruct> pool = new ArrayDeque<>(MAX_POOLED);
+
+		synchronized RspStruct obtain(int dataLength){
+			RspStruct rsp = pool.poll();
+			if(rsp == null){
+				rsp = new RspStruct();
+			}
+			if(rsp.data.length < dataLength){
+				rsp.data = new byte[dataLength];
+			}
+			rsp.responseCode = NO_RESPONSE;
+			rsp.dataCode = 0;
+			rsp.dataLength = dataLength;
+			rsp.wordsDecoded = false;
+			return rsp;
+		}
+
+		synchronized void release(RspStruct rsp){
+			if(rsp != null && pool.size() < MAX_POOLED && !pool.contains(rsp)){
+				pool.add(rsp);
+			}
+		}
+	}
+	private final ResponsePool responsePool = new ResponsePool();
+
+	//Must be called by the consumer once it doesn't need the response anymore
+	public void releaseResponse(RspStruct rsp){
+		responsePool.release(rsp);
 	}
 
 
@@ -118,16 +181,20 @@ class Protocol {
 	    int minor;
 	    int revision;
 
-	    public static FirmwareVersion parse(ArrayList<Integer> arr){
+	    public static FirmwareVersion parse(RspStruct rsp){
 	        FirmwareVersion version = new FirmwareVersion();
 
-	        if(arr.size() < 12) return null;
-	        version.major = arr.get(0) << 24 | arr.get(1) << 16 | arr.get(2) << 8 | arr.get(3);
-            version.minor = arr.get(4) << 24 | arr.get(5) << 16 | arr.get(6) << 8 | arr.get(7);
-            version.revision = arr.get(8) << 24 | arr.get(9) << 16 | arr.get(10) << 8 | arr.get(11);
+	        if(rsp.dataLength < 12) return null;
+	        version.major = readInt(rsp.data, 0);
+	        version.minor = readInt(rsp.data, 4);
+	        version.revision = readInt(rsp.data, 8);
             return version;
         }
 
+        private static int readInt(byte[] arr, int offset){
+	    	return (arr[offset] & 0xFF) << 24 | (arr[offset + 1] & 0xFF) << 16 | (arr[offset + 2] & 0xFF) << 8 | (arr[offset + 3] & 0xFF);
+		}
+
 	    public String toString(){
 	        return major + "." + minor + "." + revision;
         }
@@ -143,132 +210,185 @@ class Protocol {
 	}
 
 
-	Queue<Byte> messageBuffer = new LinkedList<Byte>();
+	FrameAssembler frameAssembler = new FrameAssembler();
 
-	Queue<Protocol.RspStruct> responseQueue = new LinkedList<Protocol.RspStruct>();
+	Queue<Protocol.RspStruct> responseQueue = new ArrayDeque<Protocol.RspStruct>();
 
 
 	public void handleNewData(byte[] data){
 
-		//received a chunk of message. store in message buffer
-		for(int i = 0; i < data.length; i++ ){
-			messageBuffer.add(data[i]);
-		}
+		//received a chunk of message. assembler calls handleEncodedMessage for each complete message
+		frameAssembler.push(data, this::handleEncodedMessage);
+
+	}
+
+	private final Cobs.DecodeResult decodeResult = new Cobs.DecodeResult();
+
+	private void handleEncodedMessage(byte[] buffer, int offset, int length){
+
+		//decode message in place, decoded message is never longer than encoded one
+		Cobs.decode(buffer, offset, length, buffer, offset, length, decodeResult);
+
+		//check size
+		if(decodeResult.outLen >= Protocol.RESPONSE_HEADER_SIZE){
+			//size ok
+
+			int dataLength = ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+
+			//check data length
+			if(dataLength == decodeResult.outLen - Protocol.RESPONSE_HEADER_SIZE){
+
+				//take response from pool
+				Protocol.RspStruct response = responsePool.obtain(dataLength);
+
+				response.responseCode = buffer[offset] & 0xFF;
+				response.dataCode = buffer[offset + 1] & 0xFF;
+
+				// data length ok, copy data to response structure
+				System.arraycopy(buffer, offset + Protocol.RESPONSE_HEADER_SIZE, response.data, 0, dataLength);
+
+				//response successfuly created, add it to queue
+				responseQueue.add(response);
+
+				//notify
+				if(responseListener != null) responseListener.onResponse(responseQueue);
 
-		//count number of messages
-		int numDelimiters = 0;
-		for(Byte b : messageBuffer){
-			//if current byte is a message delimiter (0x00), increase counter
-			if(b == 0x00){
-				numDelimiters++;
 			}
+
 		}
 
-		//extract messages
-		for(int i = 0; i < numDelimiters; i++){
-			//Add data to array
-			ArrayList<Character> arrayOfEncoded = new ArrayList<Character>();
-			byte b;
-			while(  messageBuffer.size() > 0 && (b = messageBuffer.poll()) != 0x00){
-				char c = (char) (((char) b) & 0xFF);
-				arrayOfEncoded.add(c);
-			}
+	}
 
-			char[] cobsEncoded = new char[arrayOfEncoded.size()];
-			for(int k = 0; k< arrayOfEncoded.size(); k++){
-				cobsEncoded[k] = arrayOfEncoded.get(k);
-			}
 
-			char[] cobsDecoded = new char[Cobs.decodeDstBufMaxLen(cobsEncoded.length)];
 
-			//decode message
-			Cobs.DecodeResult decodeResult = Cobs.decode(cobsDecoded, cobsDecoded.length, cobsEncoded, cobsEncoded.length);
+	//scratch buffers for outgoing commands, reused between commands
+	private byte[] commandBuffer = new byte[COMMAND_HEADER_SIZE];
+	private byte[] encodeBuffer = new byte[Cobs.encodeDstBufMaxLen(COMMAND_HEADER_SIZE)];
+	private final Cobs.EncodeResult encodeResult = new Cobs.EncodeResult();
 
-			//create empty response
-			Protocol.RspStruct response = new Protocol.RspStruct();
-			//set to no response
-			response.responseCode = Protocol.NO_RESPONSE;
+	//returns COBS encoded command including message delimiter, null if encoding failed
+	public synchronized byte[] encodeCommand(Protocol.CmdStruct cmd){
 
+		if(cmd.dataLength > cmd.data.length) return null;
 
-			//check size
-			if(decodeResult.outLen >= Protocol.RESPONSE_HEADER_SIZE){
-				//size ok
+		int messageLength = Protocol.COMMAND_HEADER_SIZE + cmd.dataLength;
+		if(commandBuffer.length < messageLength){
+			commandBuffer = new byte[messageLength];
+			encodeBuffer = new byte[Cobs.encodeDstBufMaxLen(messageLength)];
+		}
 
-				response.responseCode = ((int) cobsDecoded[0]) & 0xFF;
-				response.dataCode = ((int) cobsDecoded[1]) & 0xFF;
-				response.dataLength = (( ( (int) cobsDecoded[2]) & 0xFF) << 8) | ( ((int) cobsDecoded[3]) & 0xFF);
+		commandBuffer[0] = (byte) (cmd.commandCode);
+		commandBuffer[1] = (byte) ((cmd.dataLength >> 8) & 0xFF);
+		commandBuffer[2] = (byte) (cmd.dataLength & 0xFF);
 
-				//check data length
-				if(response.dataLength == decodeResult.outLen - Protocol.RESPONSE_HEADER_SIZE){
+		System.arraycopy(cmd.data, 0, commandBuffer, Protocol.COMMAND_HEADER_SIZE, cmd.dataLength);
 
-					// data length ok, copy data to response structure
-					for(int f = 0; f < response.dataLength; f++){
-						int counter = Protocol.RESPONSE_HEADER_SIZE + f;
-						response.data.add(((int) cobsDecoded[counter]) & 0xFF);
-					}
+		//encode message with COBS
+		Cobs.encode(encodeBuffer, 0, encodeBuffer.length, commandBuffer, 0, messageLength, encodeResult);
 
-					//response successfuly created, add it to queue
-					responseQueue.add(response);
+		if(encodeResult.status != Cobs.EncodeStatus.OK) return null;
 
-					//notify
-					if(responseListener != null) responseListener.onResponse(responseQueue);
+		//create a byte array with length of encoded message and additional byte for delimiter (0x00)
+		byte[] encoded = new byte[encodeResult.outLen + 1];
+		System.arraycopy(encodeBuffer, 0, encoded, 0, encodeResult.outLen);
 
-				}
+		//add message delimiter
+		encoded[encodeResult.outLen] = 0x00;
 
+		return encoded;
+	}
 
-			}
+	//Commands with no or a single byte of data are encoded once and cached
+	//cache is indexed by [commandCode][data byte + 1], index 0 is for commands without data
+	private final byte[][][] encodedCommandCache = new byte[256][][];
 
+	public synchronized byte[] getEncodedCommand(int commandCode){
+		return getCachedCommand(commandCode, 0, false);
+	}
 
-		}
+	public synchronized byte[] getEncodedCommand(int commandCode, int value){
+		return getCachedCommand(commandCode, value, true);
 	}
 
+	private byte[] getCachedCommand(int commandCode, int value, boolean hasValue){
+		commandCode &= 0xFF;
+		int index = hasValue ? (value & 0xFF) + 1 : 0;
 
+		if(encodedCommandCache[commandCode] == null){
+			encodedCommandCache[commandCode] = new byte[257][];
+		}
+
+		byte[] encoded = encodedCommandCache[commandCode][index];
+		if(encoded == null){
+			Protocol.CmdStruct cmd = new Protocol.CmdStruct();
+			cmd.commandCode = commandCode;
+			if(hasValue){
+				cmd.dataLength = 1;
+				cmd.data = new byte[]{(byte) value};
+			}
+			encoded = encodeCommand(cmd);
+			encodedCommandCache[commandCode][index] = encoded;
+		}
+		return encoded;
+	}
 
 	public void sendCommand(Protocol.CmdStruct cmd){
-		//prepare to send command
-		//create char array
+		sendEncoded(encodeCommand(cmd));
+	}
 
-		if(cmd.dataLength != cmd.data.size()) return;
+	public void sendCommand(int commandCode){
+		sendEncoded(getEncodedCommand(commandCode));
+	}
 
-		char[] message = new char[Protocol.COMMAND_HEADER_SIZE + cmd.dataLength];
-		message[0] = (char) (cmd.commandCode);
-		message[1] = (char) ((cmd.dataLength >> 8) & 0xFF);
-		message[2] = (char) (cmd.dataLength & 0xFF);
+	public void sendCommand(int commandCode, int value){
+		sendEncoded(getEncodedCommand(commandCode, value));
+	}
 
-		for(int i = 0; i<cmd.dataLength; i++){
-			message[i + Protocol.COMMAND_HEADER_SIZE] = (char) (cmd.data.get(i) & 0xFF);
+	private void sendEncoded(byte[] encoded){
+		//encoded arrays may be cached, sender must not modify them
+		if(encoded != null && sender != null){
+			sender.sendBytes(encoded);
 		}
+	}
 
-		//prepare to encode message with COBS
-		//create dst buffer
-		char[] encodedMessage = new char[Cobs.encodeDstBufMaxLen(message.length)];
-		Cobs.EncodeResult encodeResult = Cobs.encode(encodedMessage, encodedMessage.length, message, message.length);
+	//Collects several encoded commands and sends them with a single write
+	class CommandBatch {
+		private byte[] buffer = new byte[64];
+		private int length = 0;
 
-		if(encodeResult.status == Cobs.EncodeStatus.OK){
-			//data encoded successfully
+		CommandBatch add(int commandCode){
+			return append(getEncodedCommand(commandCode));
+		}
 
-			//create a byte array with length of encoded message and additional byte for delimiter (0x00)
-			byte[] toWrite = new byte[encodeResult.outLen + 1];
+		CommandBatch add(int commandCode, int value){
+			return append(getEncodedCommand(commandCode, value));
+		}
 
-			//copy data to byte array for transmittion over usb
-			for(int i = 0; i< encodeResult.outLen; i++){
-				toWrite[i] = (byte) (encodedMessage[i] & 0xFF);
-			}
+		CommandBatch add(Protocol.CmdStruct cmd){
+			return append(encodeCommand(cmd));
+		}
 
-			//add message delimiter
-			toWrite[encodeResult.outLen] = 0x00;
+		private CommandBatch append(byte[] encoded){
+			if(encoded == null) return this;
 
-			//send
-			if (sender != null) {
-				sender.sendBytes(toWrite);
+			if(length + encoded.length > buffer.length){
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + encoded.length));
 			}
-
+			System.arraycopy(encoded, 0, buffer, length, encoded.length);
+			length += encoded.length;
+			return this;
 		}
 
+		void send(){
+			if(length == 0) return;
+			sendEncoded(Arrays.copyOf(buffer, length));
+			length = 0;
+		}
 	}
 
-
-
+	public CommandBatch newBatch(){
+		return new CommandBatch();
+	}
 
 
 
@@ -0,0 +1,55 @@
+package com.themarpe.openthermalcamera;
+
+import java.util.Arrays;
+
+/*
+ * Per pixel exponential moving average, to reduce sensor noise at high refresh rates.
+ * A pixel which changes by more than the reset threshold (e.g. because something moved)
+ * takes the new value directly, so moving objects don't leave trails.
+ * Only pixels of the current subpage are filtered, the others keep their filtered value.
+ */
+class TemporalFilter {
+
+    public static final double DEFAULT_RESET_THRESHOLD = 2.0;
+
+    //filtered values, NaN until a pixel's first sample
+    private final double[] state;
+
+    //weight of a new sample, 1 disables filtering
+    private double weight = 0.5;
+    private double resetThreshold = DEFAULT_RESET_THRESHOLD;
+
+    TemporalFilter(int size){
+        state = new double[size];
+        reset();
+    }
+
+    //strength 0 (no filtering) to < 1 (strongest)
+    void setStrength(double strength){
+        weight = 1 - Math.max(0, Math.min(strength, 0.95));
+    }
+
+    void setResetThreshold(double threshold){
+        resetThreshold = threshold;
+    }
+
+    void reset(){
+        Arrays.fill(state, Double.NaN);
+    }
+
+    //filters given pixels of data in place
+    void apply(double[] data, int[] pixels){
+        for(int i = 0; i < pixels.length; i++){
+            int p = pixels[i];
+            double value = data[p];
+            double difference = value - state[p];
+            //NaN difference (first sample) fails the comparison and resets too
+            if(Math.abs(difference) <= resetThreshold){
+                value = state[p] + weight * difference;
+            }
+            state[p] = value;
+            data[p] = value;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.themarpe.openthermalcamera;
+
+import java.util.ArrayDeque;
+
+/*
+ * One calibrated frame, as handed over from the decode thread to frame listeners.
+ * Frames are pooled, listeners must copy what they need and not keep a reference
+ * after onFrame returns.
+ */
+class ThermalFrame {
+
+    //temperatures [height][width], already flipped to display orientation.
+    //Relative IR intensity instead of temperature in RAW_INTENSITY mode
+    final double[][] temperature = new double[OTC.IR_HEIGHT][OTC.IR_WIDTH];
+
+    double minTemperature;
+    double maxTemperature;
+    double meanTemperature;
+    //position of maxTemperature in temperature array
+    int maxX, maxY;
+
+    OTC.PipelineMode pipelineMode = OTC.PipelineMode.RADIOMETRIC;
+
+    //sensor state this frame was calculated with
+    final MLX90640.FrameContext context = new MLX90640.FrameContext();
+
+    /*
+     * Mirrors sensor ordered temperatures (width * height) into display orientation and
+     * computes min, max, its position and mean in the same pass.
+     */
+    void setTemperatures(double[] sensorTemperatures){
+        final int width = OTC.IR_WIDTH;
+        double min = sensorTemperatures[width - 1];
+        double max = min;
+        double sum = 0;
+        int maxIndexX = 0, maxIndexY = 0;
+
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            double[] row = temperature[y];
+            int rowEnd = y * width + width - 1;
+            for(int x = 0; x < width; x++){
+                double t = sensorTemperatures[rowEnd - x];
+                row[x] = t;
+                sum += t;
+                if(t < min){
+                    min = t;
+                }
+                if(t > max){
+                    max = t;
+                    maxIndexX = x;
+                    maxIndexY = y;
+                }
+            }
+        }
+
+        minTemperature = min;
+        maxTemperature = max;
+        meanTemperature = sum / (width * OTC.IR_HEIGHT);
+        maxX = maxIndexX;
+        maxY = maxIndexY;
+    }
+
+    void set(ThermalFrame other){
+        for(int y = 0; y < OTC.IR_HEIGHT; y++){
+            System.arraycopy(other.temperature[y], 0, temperature[y], 0, OTC.IR_WIDTH);
+        }
+        minTemperature = other.minTemperature;
+        maxTemperature = other.maxTemperature;
+        meanTemperature = other.meanTemperature;
+        maxX = other.maxX;
+        maxY = other.maxY;
+        pipelineMode = other.pipelineMode;
+        context.set(other.context);
+    }
+
+    static class Pool {
+        private static final int MAX_POOLED = 4;
+        private final ArrayDeque<ThermalFrame> pool = new ArrayDeque<>(MAX_POOLED);
+
+        synchronized ThermalFrame obtain(){
+            ThermalFrame frame = pool.poll();
+            if(frame == null){
+                frame = new ThermalFrame();
+            }
+            return frame;
+        }
+
+        synchronized void release(ThermalFrame frame){
+            if(frame != null && pool.size() < MAX_POOLED && !pool.contains(frame)){
+                pool.add(frame);
+            }
+        }
+    }
+
+}
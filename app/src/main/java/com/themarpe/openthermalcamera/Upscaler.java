@@ -0,0 +1,246 @@
+package com.themarpe.openthermalcamera;
+
+import com.themarpe.openthermalcamera.Palette.ThermalPalette;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Interpolates the temperature field by an integer factor, before it is colored, so upscaled
+ * pictures don't depend on canvas bitmap filtering.
+ * Interpolation is separable: every source row is first interpolated horizontally, then each
+ * output row is interpolated vertically from those rows and colored. Source indices and weights
+ * of every output column and row are precomputed, with edge pixels repeated.
+ * Output rows are split between threads of a pool shared by all upscalers, the calling thread
+ * takes the last part.
+ */
+class Upscaler {
+
+    enum Mode {
+        //nearest neighbour, same as a plain scaled bitmap
+        NONE(1),
+        BILINEAR(2),
+        //Catmull-Rom, sharper than bilinear and still exact for linear gradients
+        BICUBIC(4);
+
+        final int taps;
+
+        Mode(int taps){
+            this.taps = taps;
+        }
+    }
+
+    private static final int MAX_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static ExecutorService executor = null;
+
+    private final Mode mode;
+    private final int factor;
+    private final int width, height;
+    private final int outputWidth, outputHeight;
+
+    //taps source indices and weights per output column / row
+    private final int[] columnIndex, rowIndex;
+    private final double[] columnWeight, rowWeight;
+
+    //horizontally interpolated source rows [height][outputWidth]
+    private final double[] horizontal;
+
+    private final List<RowTask> tasks = new ArrayList<>();
+    private final List<Future<Void>> futures = new ArrayList<>();
+
+    Upscaler(Mode mode, int factor, int width, int height){
+        this.mode = mode;
+        this.factor = Math.max(1, factor);
+        this.width = width;
+        this.height = height;
+        outputWidth = width * this.factor;
+        outputHeight = height * this.factor;
+
+        columnIndex = new int[outputWidth * mode.taps];
+        columnWeight = new double[outputWidth * mode.taps];
+        rowIndex = new int[outputHeight * mode.taps];
+        rowWeight = new double[outputHeight * mode.taps];
+        buildWeights(mode, this.factor, width, columnIndex, columnWeight);
+        buildWeights(mode, this.factor, height, rowIndex, rowWeight);
+
+        horizontal = new double[height * outputWidth];
+
+        setParallelism(MAX_PARALLELISM);
+    }
+
+    private static void buildWeights(Mode mode, int factor, int size, int[] index, double[] weight){
+        int taps = mode.taps;
+        for(int o = 0; o < size * factor; o++){
+            //output pixel center in source pixel coordinates
+            double position = (o + 0.5) / factor - 0.5;
+            int base = (int) Math.floor(position);
+            double t = position - base;
+
+            switch(mode){
+                case NONE:
+                    index[o] = clamp((int) Math.round(position), size);
+                    weight[o] = 1.0;
+                    break;
+
+                case BILINEAR:
+                    index[o * 2] = clamp(base, size);
+                    index[o * 2 + 1] = clamp(base + 1, size);
+                    weight[o * 2] = 1.0 - t;
+                    weight[o * 2 + 1] = t;
+                    break;
+
+                case BICUBIC:
+                    double t2 = t * t, t3 = t2 * t;
+                    for(int k = 0; k < 4; k++){
+                        index[o * 4 + k] = clamp(base - 1 + k, size);
+                    }
+                    weight[o * 4] = 0.5 * (-t3 + 2 * t2 - t);
+                    weight[o * 4 + 1] = 0.5 * (3 * t3 - 5 * t2 + 2);
+                    weight[o * 4 + 2] = 0.5 * (-3 * t3 + 4 * t2 + t);
+                    weight[o * 4 + 3] = 0.5 * (t3 - t2);
+                    break;
+            }
+        }
+    }
+
+    private static int clamp(int index, int size){
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    private static synchronized ExecutorService getExecutor(){
+        if(executor == null){
+            executor = Executors.newFixedThreadPool(Math.max(1, MAX_PARALLELISM - 1), (Runnable r) -> {
+                Thread thread = new Thread(r, "OTC-Upscale");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    //1 upscales on the calling thread only
+    void setParallelism(int parallelism){
+        parallelism = Math.max(1, Math.min(parallelism, outputHeight));
+        tasks.clear();
+        for(int i = 0; i < parallelism; i++){
+            tasks.add(new RowTask(outputHeight * i / parallelism, outputHeight * (i + 1) / parallelism));
+        }
+    }
+
+    boolean matches(Mode mode, int factor, int width, int height){
+        return this.mode == mode && this.factor == factor && this.width == width && this.height == height;
+    }
+
+    int getOutputWidth(){
+        return outputWidth;
+    }
+
+    int getOutputHeight(){
+        return outputHeight;
+    }
+
+    //colors the upscaled field into colors [outputHeight * outputWidth]
+    //false if the calling thread was interrupted, colors are then incomplete
+    boolean render(double[][] source, ThermalPalette palette, double minTemperature, double maxTemperature, int[] colors){
+        for(RowTask task : tasks){
+            task.palette = palette;
+            task.minTemperature = minTemperature;
+            task.maxTemperature = maxTemperature;
+            task.colors = colors;
+        }
+        return run(source);
+    }
+
+    private boolean run(double[][] source){
+        interpolateColumns(source);
+
+        int last = tasks.size() - 1;
+        futures.clear();
+        if(last > 0){
+            ExecutorService pool = getExecutor();
+            for(int i = 0; i < last; i++){
+                futures.add(pool.submit(tasks.get(i)));
+            }
+        }
+        tasks.get(last).call();
+
+        //tasks share horizontal and colors, so all of them finish even if interrupted
+        boolean interrupted = false;
+        for(Future<Void> future : futures){
+            while(true){
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex){
+                    interrupted = true;
+                } catch (ExecutionException ex){
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+        }
+        if(interrupted || Thread.interrupted()){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private void interpolateColumns(double[][] source){
+        final int taps = mode.taps;
+        for(int y = 0; y < height; y++){
+            double[] row = source[y];
+            int offset = y * outputWidth;
+            for(int x = 0; x < outputWidth; x++){
+                double value = 0;
+                for(int k = 0; k < taps; k++){
+                    value += columnWeight[x * taps + k] * row[columnIndex[x * taps + k]];
+                }
+                horizontal[offset + x] = value;
+            }
+        }
+    }
+
+    private class RowTask implements Callable<Void> {
+
+        private final int fromRow, toRow;
+        private final double[] rowBuffer = new double[outputWidth];
+
+        ThermalPalette palette;
+        double minTemperature, maxTemperature;
+        int[] colors;
+
+        RowTask(int fromRow, int toRow){
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        public Void call(){
+            final int taps = mode.taps;
+            for(int y = fromRow; y < toRow; y++){
+                //first tap initializes, so row doesn't have to be cleared
+                int source = rowIndex[y * taps] * outputWidth;
+                double w = rowWeight[y * taps];
+                for(int x = 0; x < outputWidth; x++){
+                    rowBuffer[x] = w * horizontal[source + x];
+                }
+                for(int k = 1; k < taps; k++){
+                    source = rowIndex[y * taps + k] * outputWidth;
+                    w = rowWeight[y * taps + k];
+                    for(int x = 0; x < outputWidth; x++){
+                        rowBuffer[x] += w * horizontal[source + x];
+                    }
+                }
+
+                palette.temperaturesToColors(rowBuffer, 0, outputWidth, minTemperature, maxTemperature, colors, y * outputWidth);
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.themarpe.openthermalcamera;
+
+import java.util.Random;
+
+/*
+ * Generates a plausible MLX90640 EEPROM dump and raw frames for a known temperature scene,
+ * by running the calibration equations backwards. Used by tests that need sensor data
+ * without a camera attached.
+ */
+class SyntheticSensor {
+
+    static final int RESOLUTION_EE = 2;
+
+    final int[] eeData = new int[832];
+    final MLX90640.Params params = new MLX90640.Params();
+
+    SyntheticSensor(long seed){
+        Random random = new Random(seed);
+
+        eeData[10] = 0x0000;
+        //alphaPTAT = 9, offset scales
+        eeData[16] = 0x4000 | (1 << 8) | (1 << 4) | 1;
+        eeData[17] = 65536 - 60;
+        for(int i = 18; i < 32; i++){
+            eeData[i] = random.nextInt(0x10000) & 0x3333;
+        }
+        //alpha scale 33, row/col/rem scales
+        eeData[32] = (3 << 12) | (2 << 8) | (2 << 4) | 1;
+        eeData[33] = 1100;
+        for(int i = 34; i < 48; i++){
+            eeData[i] = random.nextInt(0x10000) & 0x3333;
+        }
+        eeData[48] = 6383;
+        eeData[49] = 12273;
+        eeData[50] = (9 << 10) | 336;
+        eeData[51] = 0x9D68;
+        eeData[52] = 0x4444;
+        eeData[53] = (2 << 11) | (3 << 6) | 4;
+        eeData[54] = (80 << 8) | 75;
+        eeData[55] = (78 << 8) | 72;
+        eeData[56] = (RESOLUTION_EE << 12) | (3 << 8) | (6 << 4) | 2;
+        eeData[57] = 5;
+        eeData[58] = 1024 - 75;
+        eeData[59] = (3 << 8) | 66;
+        eeData[60] = 0xF020;
+        eeData[61] = 0x9797;
+        eeData[62] = 0x9797;
+        eeData[63] = (2 << 12) | (8 << 8) | (8 << 4) | 9;
+
+        for(int p = 0; p < 768; p++){
+            int offset = random.nextInt(16) - 8;
+            int alpha = random.nextInt(16) - 8;
+            int kta = random.nextInt(4) - 2;
+            eeData[64 + p] = ((offset & 0x3F) << 10) | ((alpha & 0x3F) << 4) | ((kta & 0x7) << 1);
+            if(eeData[64 + p] == 0){
+                eeData[64 + p] = 1 << 4;
+            }
+        }
+
+        new MLX90640().ExtractParameters(eeData, params);
+    }
+
+    void markBrokenPixel(int pixel){
+        eeData[64 + pixel] = 0;
+        new MLX90640().ExtractParameters(eeData, params);
+    }
+
+    /*
+     * Creates raw frame for given subpage, so that calibration with given emissivity and
+     * reflected temperature (tr) returns approximately the given temperatures (sensor pixel order).
+     */
+    int[] createFrame(double[] temperatures, int subPage, boolean chessMode, double ta, double emissivity, double tr){
+        int[] frame = new int[834];
+
+        frame[832] = (RESOLUTION_EE << 10) | (chessMode ? 0x1000 : 0);
+        frame[833] = subPage;
+
+        //vdd = 3.3V
+        frame[810] = toWord(params.vdd25);
+        double vdd = 3.3;
+
+        //ambient temperature
+        int ptat = 1700;
+        double ptatArt = (ta - 25) * params.KtPTAT + params.vPTAT25;
+        frame[800] = ptat;
+        frame[768] = toWord((int) Math.round(ptat * Math.pow(2, 18) / ptatArt - ptat * params.alphaPTAT));
+        ta = new MLX90640().GetTa(frame, params);
+
+        //gain = 1
+        frame[778] = toWord(params.gainEE);
+        double gain = 1.0;
+
+        //compensation pixels
+        frame[776] = toWord(params.cpOffset[0]);
+        frame[808] = toWord(params.cpOffset[1]);
+        double[] irDataCP = new double[2];
+        int mode = chessMode ? 0x80 : 0;
+        irDataCP[0] = params.cpOffset[0] * gain - params.cpOffset[0] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+        if(mode == params.calibrationModeEE){
+            irDataCP[1] = params.cpOffset[1] * gain - params.cpOffset[1] * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+        } else {
+            irDataCP[1] = params.cpOffset[1] * gain - (params.cpOffset[1] + params.ilChessC[0]) * (1 + params.cpKta * (ta - 25)) * (1 + params.cpKv * (vdd - 3.3));
+        }
+
+        double ta4 = Math.pow(ta + 273.15, 4);
+        double tr4 = Math.pow(tr + 273.15, 4);
+        double taTr = tr4 - (tr4 - ta4) / emissivity;
+
+        for(int p = 0; p < 768; p++){
+            int ilPattern = p / 32 - (p / 64) * 2;
+            int chessPattern = ilPattern ^ (p - (p / 2) * 2);
+            int conversionPattern = ((p + 2) / 4 - (p + 3) / 4 + (p + 1) / 4 - p / 4) * (1 - 2 * ilPattern);
+            int pattern = chessMode ? chessPattern : ilPattern;
+            if(pattern != subPage){
+                //other subpage, value is not used
+                frame[p] = toWord(params.offset[p]);
+                continue;
+            }
+
+            double alphaCompensated = (params.alpha[p] - params.tgc * params.cpAlpha[subPage]) * (1 + params.KsTa * (ta - 25));
+            double irData = solveIrData(temperatures[p], alphaCompensated, taTr);
+
+            //undo compensation steps
+            irData = (irData + params.tgc * irDataCP[subPage]) * emissivity;
+            if(mode != params.calibrationModeEE){
+                irData = irData - params.ilChessC[2] * (2 * ilPattern - 1) + params.ilChessC[1] * conversionPattern;
+            }
+            irData = irData + params.offset[p] * (1 + params.kta[p] * (ta - 25)) * (1 + params.kv[p] * (vdd - 3.3));
+            irData = irData / gain;
+
+            frame[p] = toWord((int) Math.round(irData));
+        }
+
+        return frame;
+    }
+
+    //finds irData for which the To equation returns given temperature
+    double solveIrData(double to, double alphaCompensated, double taTr){
+        double low = -alphaCompensated * taTr * 0.999;
+        double high = 32000;
+        for(int i = 0; i < 200; i++){
+            double mid = (low + high) / 2;
+            if(temperatureOf(mid, alphaCompensated, taTr) < to){
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    double temperatureOf(double irData, double alphaCompensated, double taTr){
+        double[] alphaCorrR = params.alphaCorrR;
+
+        double sx = Math.pow(alphaCompensated, 3) * (irData + alphaCompensated * taTr);
+        sx = Math.sqrt(Math.sqrt(sx)) * params.ksTo[1];
+        double to = Math.sqrt(Math.sqrt(irData / (alphaCompensated * (1 - params.ksTo[1] * 273.15) + sx) + taTr)) - 273.15;
+        int range;
+        if(to < params.ct[1]) range = 0;
+        else if(to < params.ct[2]) range = 1;
+        else if(to < params.ct[3]) range = 2;
+        else range = 3;
+        to = Math.sqrt(Math.sqrt(irData / (alphaCompensated * alphaCorrR[range] * (1 + params.ksTo[range] * (to - params.ct[range]))) + taTr)) - 273.15;
+        if(Double.isNaN(to)) return -1000;
+        return to;
+    }
+
+    //scene with a warm spot and a gradient, sensor pixel order
+    static double[] createScene(double min, double max, long seed){
+        Random random = new Random(seed);
+        double[] scene = new double[768];
+        for(int p = 0; p < 768; p++){
+            int x = p % 32;
+            int y = p / 32;
+            double d = Math.hypot(x - 20, y - 10) / 20.0;
+            double t = min + (max - min) * Math.max(0, 1 - d) * 0.8 + (max - min) * 0.2 * x / 31.0;
+            scene[p] = t + random.nextGaussian() * 0.05;
+        }
+        return scene;
+    }
+
+    private static int toWord(int value){
+        return value & 0xFFFF;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BadPixelCorrectionTest {
+
+    //away from the border, so all neighbours exist
+    private static final int BROKEN_PIXEL = 10 * 32 + 13;
+
+    private static final double TA = 25, EMISSIVITY = 0.95, TR = 17;
+
+    //linear, so the neighbour average equals the true value
+    private static double[] createGradient(){
+        double[] scene = new double[768];
+        for(int p = 0; p < 768; p++){
+            scene[p] = 20 + 0.3 * (p % 32) + 0.2 * (p / 32);
+        }
+        return scene;
+    }
+
+    private static SyntheticSensor createBrokenSensor(){
+        SyntheticSensor sensor = new SyntheticSensor(9);
+        sensor.markBrokenPixel(BROKEN_PIXEL);
+        assertEquals(1, sensor.params.badPixelCount);
+        assertEquals(BROKEN_PIXEL, sensor.params.badPixels[0]);
+        return sensor;
+    }
+
+    private static void assertCorrected(double[] scene, double[] result){
+        assertEquals(scene[BROKEN_PIXEL], result[BROKEN_PIXEL], 0.05);
+    }
+
+    private void checkCalculateTo(boolean chessMode){
+        SyntheticSensor sensor = createBrokenSensor();
+        double[] scene = createGradient();
+        MLX90640 mlxapi = new MLX90640();
+        double[] result = new double[768];
+
+        //both subpages into the same result, as while streaming
+        for(int subPage = 0; subPage < 2; subPage++){
+            int[] frame = sensor.createFrame(scene, subPage, chessMode, TA, EMISSIVITY, TR);
+            MLX90640.FrameContext context = new MLX90640.FrameContext();
+            mlxapi.GetFrameContext(frame, sensor.params, context);
+            mlxapi.CalculateTo(frame, sensor.params, context, EMISSIVITY, TR, result);
+        }
+        assertCorrected(scene, result);
+    }
+
+    @Test
+    public void calculateToInterleaved(){
+        checkCalculateTo(false);
+    }
+
+    @Test
+    public void calculateToChess(){
+        checkCalculateTo(true);
+    }
+
+    private void checkBatchRecalibrator(boolean chessMode){
+        SyntheticSensor sensor = createBrokenSensor();
+        double[] scene = createGradient();
+        List<int[]> frames = new ArrayList<>();
+        for(int i = 0; i < 6; i++){
+            frames.add(sensor.createFrame(scene, i & 1, chessMode, TA, EMISSIVITY, TR));
+        }
+
+        BatchRecalibrator recalibrator = new BatchRecalibrator(sensor.params);
+        recalibrator.setEmissivity(EMISSIVITY);
+        recalibrator.setTaShift(TA - TR);
+        BatchRecalibrator.Result result = recalibrator.recalibrate(frames);
+
+        //first frame only has one subpage, afterwards every frame is complete
+        for(int f = 1; f < frames.size(); f++){
+            assertTrue(!Double.isNaN(result.temperatures[f][BROKEN_PIXEL]));
+            assertCorrected(scene, result.temperatures[f]);
+        }
+    }
+
+    @Test
+    public void batchRecalibratorInterleaved(){
+        checkBatchRecalibrator(false);
+    }
+
+    @Test
+    public void batchRecalibratorChess(){
+        checkBatchRecalibrator(true);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRecalibratorTest {
+
+    private static List<int[]> record(SyntheticSensor sensor, int count){
+        List<int[]> frames = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            double[] scene = SyntheticSensor.createScene(15 + (i % 10), 60 + (i % 20), i % 5);
+            frames.add(sensor.createFrame(scene, i & 1, true, 25 + i * 0.001, 0.95, 17));
+        }
+        return frames;
+    }
+
+    @Test
+    public void parallelMatchesSequential(){
+        SyntheticSensor sensor = new SyntheticSensor(6);
+        List<int[]> frames = record(sensor, 100);
+
+        BatchRecalibrator sequential = new BatchRecalibrator(sensor.params);
+        sequential.setParallelism(1);
+        sequential.setEmissivity(0.8);
+        BatchRecalibrator parallel = new BatchRecalibrator(sensor.params);
+        parallel.setParallelism(4);
+        parallel.setEmissivity(0.8);
+
+        BatchRecalibrator.Result expected = sequential.recalibrate(frames);
+        BatchRecalibrator.Result actual = parallel.recalibrate(frames);
+
+        for(int f = 0; f < frames.size(); f++){
+            for(int p = 0; p < 768; p++){
+                assertEquals(expected.temperatures[f][p], actual.temperatures[f][p], 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void mergesSubPagesOfConsecutiveFrames(){
+        SyntheticSensor sensor = new SyntheticSensor(7);
+        List<int[]> frames = record(sensor, 3);
+
+        BatchRecalibrator.Result result = new BatchRecalibrator(sensor.params).recalibrate(frames);
+
+        //first frame contains only subpage 0
+        assertTrue(Double.isNaN(result.temperatures[0][MLX90640.SUBPAGE_PIXELS[1][1][0]]));
+        for(int p = 0; p < 768; p++){
+            assertTrue(!Double.isNaN(result.temperatures[1][p]));
+        }
+        //subpage 1 of frame 2 comes from frame 1
+        for(int p : MLX90640.SUBPAGE_PIXELS[1][1]){
+            assertEquals(result.temperatures[1][p], result.temperatures[2][p], 0);
+        }
+    }
+
+}
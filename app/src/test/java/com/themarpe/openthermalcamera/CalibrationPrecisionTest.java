@@ -0,0 +1,83 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Compares single precision calibration against the double precision reference,
+ * over synthetic frames covering the sensor's range in both scan modes.
+ */
+public class CalibrationPrecisionTest {
+
+    private static final double MAX_TEMPERATURE_DEVIATION = 1e-4;
+    private static final double MAX_TEMPERATURE_RMS = 3e-5;
+
+    @Test
+    public void singlePrecisionTemperatureDeviation() {
+        SyntheticSensor sensor = new SyntheticSensor(1);
+        MLX90640 reference = new MLX90640();
+        MLX90640 single = new MLX90640();
+        single.setSinglePrecision(true);
+
+        double[] expected = new double[768];
+        double[] actual = new double[768];
+        double maxDeviation = 0;
+        double sumSquares = 0;
+        int count = 0;
+
+        for(boolean chess : new boolean[]{true, false}){
+            for(int scene = 0; scene < 8; scene++){
+                double min = -40 + scene * 5;
+                double max = 60 + scene * 30;
+                double[] temperatures = SyntheticSensor.createScene(min, max, scene);
+                double ta = 10 + scene * 4;
+
+                for(int subPage = 0; subPage < 2; subPage++){
+                    int[] frame = sensor.createFrame(temperatures, subPage, chess, ta, 0.95, ta - 8);
+                    double tr = reference.GetTa(frame, sensor.params) - 8;
+                    reference.CalculateTo(frame, sensor.params, 0.95, tr, expected);
+                    single.CalculateTo(frame, sensor.params, 0.95, tr, actual);
+
+                    for(int pixel : MLX90640.SUBPAGE_PIXELS[chess ? 1 : 0][subPage]){
+                        double deviation = Math.abs(expected[pixel] - actual[pixel]);
+                        maxDeviation = Math.max(maxDeviation, deviation);
+                        sumSquares += deviation * deviation;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        double rms = Math.sqrt(sumSquares / count);
+        assertTrue("max deviation " + maxDeviation + " C", maxDeviation < MAX_TEMPERATURE_DEVIATION);
+        assertTrue("RMS deviation " + rms + " C", rms < MAX_TEMPERATURE_RMS);
+    }
+
+    @Test
+    public void singlePrecisionImageDeviation() {
+        SyntheticSensor sensor = new SyntheticSensor(2);
+        MLX90640 reference = new MLX90640();
+        MLX90640 single = new MLX90640();
+        single.setSinglePrecision(true);
+
+        double[] expected = new double[768];
+        double[] actual = new double[768];
+        double maxRelativeDeviation = 0;
+
+        double[] temperatures = SyntheticSensor.createScene(0, 250, 3);
+        for(int subPage = 0; subPage < 2; subPage++){
+            int[] frame = sensor.createFrame(temperatures, subPage, true, 30, 1, 30);
+            reference.GetImage(frame, sensor.params, expected);
+            single.GetImage(frame, sensor.params, actual);
+
+            for(int pixel : MLX90640.SUBPAGE_PIXELS[1][subPage]){
+                double scale = Math.max(Math.abs(expected[pixel]), 1);
+                maxRelativeDeviation = Math.max(maxRelativeDeviation, Math.abs(expected[pixel] - actual[pixel]) / scale);
+            }
+        }
+
+        assertTrue(maxRelativeDeviation < 1e-4);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CalibrationStoreTest {
+
+    private static final int BROKEN_PIXEL = 5 * 32 + 7;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("calibration").toFile();
+    }
+
+    @After
+    public void deleteDirectory(){
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File f : files) f.delete();
+        }
+        directory.delete();
+    }
+
+    private static SyntheticSensor createSensor(){
+        SyntheticSensor sensor = new SyntheticSensor(11);
+        sensor.markBrokenPixel(BROKEN_PIXEL);
+        return sensor;
+    }
+
+    private File storedFile(){
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private void modifyStoredFile(int position) throws IOException {
+        File file = storedFile();
+        byte[] content = Files.readAllBytes(file.toPath());
+        content[position] ^= 0x01;
+        Files.write(file.toPath(), content);
+    }
+
+    private static void assertSameArray(double[] expected, double[] actual){
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++){
+            assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+        }
+    }
+
+    @Test
+    public void roundTrip(){
+        SyntheticSensor sensor = createSensor();
+        long eeHash = CalibrationStore.hash(sensor.eeData);
+        assertTrue(new CalibrationStore(directory).save(eeHash, sensor.params));
+
+        CalibrationStore.Entry entry = new CalibrationStore(directory).load();
+        assertNotNull(entry);
+        assertEquals(eeHash, entry.eeHash);
+
+        MLX90640.Params p = sensor.params, l = entry.params;
+        assertEquals(p.kVdd, l.kVdd);
+        assertEquals(p.vdd25, l.vdd25);
+        assertSameArray(new double[]{p.KvPTAT, p.KtPTAT, p.alphaPTAT, p.tgc, p.cpKv, p.cpKta, p.KsTa},
+                new double[]{l.KvPTAT, l.KtPTAT, l.alphaPTAT, l.tgc, l.cpKv, l.cpKta, l.KsTa});
+        assertEquals(p.vPTAT25, l.vPTAT25);
+        assertEquals(p.gainEE, l.gainEE);
+        assertEquals(p.resolutionEE, l.resolutionEE);
+        assertEquals(p.calibrationModeEE, l.calibrationModeEE);
+        assertSameArray(p.ksTo, l.ksTo);
+        assertArrayEquals(p.ct, l.ct);
+        assertSameArray(p.alpha, l.alpha);
+        assertArrayEquals(p.offset, l.offset);
+        assertSameArray(p.kta, l.kta);
+        assertSameArray(p.kv, l.kv);
+        assertSameArray(p.cpAlpha, l.cpAlpha);
+        assertArrayEquals(p.cpOffset, l.cpOffset);
+        assertSameArray(p.ilChessC, l.ilChessC);
+        assertArrayEquals(p.brokenPixels, l.brokenPixels);
+        assertArrayEquals(p.outlierPixels, l.outlierPixels);
+        assertSameArray(p.alphaCorrR, l.alphaCorrR);
+
+        //bad pixel tables are not stored, but rebuilt on load
+        assertEquals(1, l.badPixelCount);
+        assertEquals(p.badPixelCount, l.badPixelCount);
+        assertArrayEquals(p.badPixels, l.badPixels);
+        for(int mode = 0; mode < 2; mode++){
+            assertArrayEquals(p.badPixelNeighbours[mode], l.badPixelNeighbours[mode]);
+            assertSameArray(p.badPixelWeights[mode], l.badPixelWeights[mode]);
+        }
+    }
+
+    @Test
+    public void nothingStored(){
+        assertNull(new CalibrationStore(directory).load());
+    }
+
+    @Test
+    public void rejectsBadMagic() throws IOException {
+        SyntheticSensor sensor = createSensor();
+        new CalibrationStore(directory).save(CalibrationStore.hash(sensor.eeData), sensor.params);
+        modifyStoredFile(0);
+        assertNull(new CalibrationStore(directory).load());
+    }
+
+    @Test
+    public void rejectsBadVersion() throws IOException {
+        SyntheticSensor sensor = createSensor();
+        new CalibrationStore(directory).save(CalibrationStore.hash(sensor.eeData), sensor.params);
+        modifyStoredFile(7);
+        assertNull(new CalibrationStore(directory).load());
+    }
+
+    @Test
+    public void rejectsBadChecksum() throws IOException {
+        SyntheticSensor sensor = createSensor();
+        new CalibrationStore(directory).save(CalibrationStore.hash(sensor.eeData), sensor.params);
+        //somewhere in the pixel parameters
+        modifyStoredFile((int) (storedFile().length() / 2));
+        assertNull(new CalibrationStore(directory).load());
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        SyntheticSensor sensor = createSensor();
+        new CalibrationStore(directory).save(CalibrationStore.hash(sensor.eeData), sensor.params);
+        File file = storedFile();
+        byte[] content = Files.readAllBytes(file.toPath());
+        byte[] truncated = new byte[content.length - 8];
+        System.arraycopy(content, 0, truncated, 0, truncated.length);
+        Files.write(file.toPath(), truncated);
+        assertNull(new CalibrationStore(directory).load());
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/*
+ * The byte[] variants of Cobs.encode / Cobs.decode must produce the same output as the
+ * original char[] variants, for payloads with and without zero bytes and long non-zero runs.
+ */
+public class CobsTest {
+
+    //place results behind some unrelated bytes, to check offsets are honoured
+    private static final int OFFSET = 3;
+
+    private static List<byte[]> payloads(){
+        List<byte[]> payloads = new ArrayList<>();
+        //no empty payload, encodeDstBufMaxLen(0) leaves no room for the code byte
+        payloads.add(new byte[]{0});
+        payloads.add(new byte[]{0, 0, 0});
+        payloads.add(new byte[]{1, 2, 0, 3, (byte) 0xFF, 0});
+        //non-zero runs around the 254 byte block length
+        for(int length : new int[]{253, 254, 255, 508, 600}){
+            byte[] run = new byte[length];
+            for(int i = 0; i < length; i++){
+                run[i] = (byte) (1 + i % 255);
+            }
+            payloads.add(run);
+        }
+        //frame sized random data, zeros included
+        Random random = new Random(1);
+        byte[] frame = new byte[1668 + 4];
+        random.nextBytes(frame);
+        payloads.add(frame);
+        return payloads;
+    }
+
+    private static char[] toChars(byte[] data, int length){
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = (char) (data[i] & 0xFF);
+        }
+        return chars;
+    }
+
+    private static byte[] toBytes(char[] data, int length){
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++){
+            bytes[i] = (byte) data[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] encode(byte[] payload){
+        int maxLen = Cobs.encodeDstBufMaxLen(payload.length);
+        byte[] dst = new byte[OFFSET + maxLen];
+        byte[] src = new byte[OFFSET + payload.length];
+        System.arraycopy(payload, 0, src, OFFSET, payload.length);
+
+        Cobs.EncodeResult result = new Cobs.EncodeResult();
+        Cobs.encode(dst, OFFSET, maxLen, src, OFFSET, payload.length, result);
+        assertEquals(Cobs.EncodeStatus.OK, result.status);
+        return Arrays.copyOfRange(dst, OFFSET, OFFSET + result.outLen);
+    }
+
+    @Test
+    public void encodeMatchesCharApi(){
+        for(byte[] payload : payloads()){
+            char[] dst = new char[Cobs.encodeDstBufMaxLen(payload.length)];
+            Cobs.EncodeResult expected = Cobs.encode(dst, dst.length, toChars(payload, payload.length), payload.length);
+            assertEquals(Cobs.EncodeStatus.OK, expected.status);
+
+            byte[] encoded = encode(payload);
+            assertArrayEquals(toBytes(dst, expected.outLen), encoded);
+            for(byte b : encoded){
+                assertEquals(false, b == 0);
+            }
+        }
+    }
+
+    @Test
+    public void decodeMatchesCharApi(){
+        for(byte[] payload : payloads()){
+            byte[] encoded = encode(payload);
+
+            char[] expectedDst = new char[Cobs.decodeDstBufMaxLen(encoded.length)];
+            Cobs.DecodeResult expected = Cobs.decode(expectedDst, expectedDst.length, toChars(encoded, encoded.length), encoded.length);
+
+            byte[] dst = new byte[OFFSET + encoded.length];
+            byte[] src = new byte[OFFSET + encoded.length];
+            System.arraycopy(encoded, 0, src, OFFSET, encoded.length);
+            Cobs.DecodeResult result = new Cobs.DecodeResult();
+            Cobs.decode(dst, OFFSET, Cobs.decodeDstBufMaxLen(encoded.length), src, OFFSET, encoded.length, result);
+
+            assertEquals(Cobs.DecodeStatus.OK, result.status);
+            assertEquals(expected.status, result.status);
+            assertArrayEquals(toBytes(expectedDst, expected.outLen), Arrays.copyOfRange(dst, OFFSET, OFFSET + result.outLen));
+            assertArrayEquals(payload, Arrays.copyOfRange(dst, OFFSET, OFFSET + result.outLen));
+        }
+    }
+
+    @Test
+    public void decodesInPlace(){
+        for(byte[] payload : payloads()){
+            byte[] encoded = encode(payload);
+            byte[] buffer = new byte[OFFSET + encoded.length];
+            System.arraycopy(encoded, 0, buffer, OFFSET, encoded.length);
+
+            Cobs.DecodeResult result = new Cobs.DecodeResult();
+            Cobs.decode(buffer, OFFSET, encoded.length, buffer, OFFSET, encoded.length, result);
+
+            assertEquals(Cobs.DecodeStatus.OK, result.status);
+            assertArrayEquals(payload, Arrays.copyOfRange(buffer, OFFSET, OFFSET + result.outLen));
+        }
+    }
+
+    @Test
+    public void reportsOutputOverflow(){
+        byte[] payload = payloads().get(3);
+
+        Cobs.EncodeResult encodeResult = new Cobs.EncodeResult();
+        byte[] small = new byte[payload.length];
+        Cobs.encode(small, 0, small.length, payload, 0, payload.length, encodeResult);
+        assertEquals(Cobs.EncodeStatus.OUT_BUFFER_OVERFLOW, encodeResult.status);
+        assertEquals(small.length, encodeResult.outLen);
+
+        byte[] encoded = encode(payload);
+        Cobs.DecodeResult decodeResult = new Cobs.DecodeResult();
+        small = new byte[payload.length - 1];
+        Cobs.decode(small, 0, small.length, encoded, 0, encoded.length, decodeResult);
+        assertEquals(Cobs.DecodeStatus.OUT_BUFFER_OVERFLOW, decodeResult.status);
+        assertEquals(small.length, decodeResult.outLen);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Error of the fast fourth root over the sensor range, alone and within CalculateTo.
+ * Timings are measured on the device (see androidTest FastMathBenchmark).
+ */
+public class FastMathTest {
+
+    @Test
+    public void fourthRootErrorWithinBound() {
+        for(int iterations = 0; iterations <= FastMath.MAX_ITERATIONS; iterations++){
+            double maxError = 0;
+            for(double t = OTC.MLX_MIN_TEMP; t <= OTC.MLX_MAX_TEMP; t += 0.01){
+                double kelvin = t + 273.15;
+                double x = FastMath.fourthPower(kelvin);
+                maxError = Math.max(maxError, Math.abs(FastMath.fourthRoot(x, iterations) - kelvin));
+            }
+            assertTrue(maxError <= FastMath.getMaxRelativeError(iterations) * (OTC.MLX_MAX_TEMP + 273.15));
+        }
+    }
+
+    @Test
+    public void calculateToErrorWithinTarget() {
+        SyntheticSensor sensor = new SyntheticSensor(4);
+        double[] expected = new double[768];
+        double[] actual = new double[768];
+
+        for(double target : new double[]{0.1, 0.01, 0.001}){
+            MLX90640 reference = new MLX90640();
+            MLX90640 fast = new MLX90640();
+            fast.setFastMath(target);
+
+            double maxError = 0;
+            for(int scene = 0; scene < 4; scene++){
+                double[] temperatures = SyntheticSensor.createScene(OTC.MLX_MIN_TEMP, OTC.MLX_MAX_TEMP - scene * 50, scene);
+                for(int subPage = 0; subPage < 2; subPage++){
+                    int[] frame = sensor.createFrame(temperatures, subPage, true, 25, 0.95, 17);
+                    reference.CalculateTo(frame, sensor.params, 0.95, 17, expected);
+                    fast.CalculateTo(frame, sensor.params, 0.95, 17, actual);
+                    for(int pixel : MLX90640.SUBPAGE_PIXELS[1][subPage]){
+                        maxError = Math.max(maxError, Math.abs(expected[pixel] - actual[pixel]));
+                    }
+                }
+            }
+            assertTrue(maxError <= target);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FrameAssemblerTest {
+
+    //messages and the buffers they were handed out in
+    private static class Collector implements FrameAssembler.FrameListener {
+        final List<byte[]> messages = new ArrayList<>();
+        final List<byte[]> buffers = new ArrayList<>();
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length){
+            messages.add(Arrays.copyOfRange(buffer, offset, offset + length));
+            buffers.add(buffer);
+        }
+    }
+
+    private static byte[] bytes(int... values){
+        byte[] result = new byte[values.length];
+        for(int i = 0; i < values.length; i++){
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void assemblesMessagesSplitAcrossChunks(){
+        FrameAssembler assembler = new FrameAssembler(64);
+        Collector collector = new Collector();
+
+        assembler.push(bytes(1, 2), collector);
+        assertEquals(0, collector.messages.size());
+        assembler.push(bytes(3, 0, 4), collector);
+        assembler.push(bytes(5, 6, 0, 7, 0), collector);
+
+        assertEquals(3, collector.messages.size());
+        assertArrayEquals(bytes(1, 2, 3), collector.messages.get(0));
+        assertArrayEquals(bytes(4, 5, 6), collector.messages.get(1));
+        assertArrayEquals(bytes(7), collector.messages.get(2));
+        assertEquals(0, assembler.getDroppedMessages());
+    }
+
+    @Test
+    public void wrapsAroundRing(){
+        FrameAssembler assembler = new FrameAssembler(16);
+        Collector collector = new Collector();
+
+        //11 bytes, next message starts at ring position 11
+        assembler.push(bytes(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 0), collector);
+        //9 bytes, continues at ring position 0
+        assembler.push(bytes(11, 12, 13, 14, 15, 16, 17, 18, 0), collector);
+        //contiguous again
+        assembler.push(bytes(19, 20, 0), collector);
+
+        assertEquals(3, collector.messages.size());
+        assertArrayEquals(bytes(11, 12, 13, 14, 15, 16, 17, 18), collector.messages.get(1));
+        assertArrayEquals(bytes(19, 20), collector.messages.get(2));
+        //wrapped message is handed out in the scratch buffer, others as ring slices
+        assertNotSame(collector.buffers.get(0), collector.buffers.get(1));
+        assertSame(collector.buffers.get(0), collector.buffers.get(2));
+    }
+
+    @Test
+    public void dropsOverflowAndResyncs(){
+        FrameAssembler assembler = new FrameAssembler(16);
+        Collector collector = new Collector();
+
+        byte[] tooLong = new byte[20];
+        Arrays.fill(tooLong, (byte) 9);
+        assembler.push(tooLong, collector);
+        //rest of the dropped message is skipped up to its delimiter
+        assembler.push(bytes(9, 9, 0, 1, 2, 0), collector);
+
+        assertEquals(1, assembler.getDroppedMessages());
+        assertEquals(1, collector.messages.size());
+        assertArrayEquals(bytes(1, 2), collector.messages.get(0));
+    }
+
+    @Test
+    public void resetClearsStateAndDroppedCount(){
+        FrameAssembler assembler = new FrameAssembler(16);
+        Collector collector = new Collector();
+
+        byte[] tooLong = new byte[20];
+        Arrays.fill(tooLong, (byte) 9);
+        assembler.push(tooLong, collector);
+        assertEquals(1, assembler.getDroppedMessages());
+
+        assembler.reset();
+        assertEquals(0, assembler.getDroppedMessages());
+
+        //no resync after reset, partial message is discarded
+        assembler.push(bytes(1, 2, 0), collector);
+        assembler.push(bytes(3), collector);
+        assembler.reset();
+        assembler.push(bytes(4, 0), collector);
+
+        assertEquals(2, collector.messages.size());
+        assertArrayEquals(bytes(1, 2), collector.messages.get(0));
+        assertArrayEquals(bytes(4), collector.messages.get(1));
+    }
+
+}
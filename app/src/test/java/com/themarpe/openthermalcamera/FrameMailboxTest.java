@@ -0,0 +1,31 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameMailboxTest {
+
+    @Test
+    public void shrinksToLoweredDepth(){
+        List<Integer> recycled = new ArrayList<>();
+        FrameMailbox<Integer> mailbox = new FrameMailbox<>(4, recycled::add);
+        for(int i = 0; i < 4; i++){
+            mailbox.offer(i);
+        }
+
+        mailbox.setDepth(2);
+        mailbox.offer(4);
+
+        assertEquals(2, mailbox.size());
+        assertEquals(Arrays.asList(0, 1, 2), recycled);
+        assertEquals(3, mailbox.getDroppedCount());
+        assertEquals(Integer.valueOf(3), mailbox.poll());
+        assertEquals(Integer.valueOf(4), mailbox.poll());
+    }
+
+}
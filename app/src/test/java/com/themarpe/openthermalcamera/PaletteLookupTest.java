@@ -0,0 +1,80 @@
+package com.themarpe.openthermalcamera;
+
+import com.themarpe.openthermalcamera.Palette.DarkHotPalette;
+import com.themarpe.openthermalcamera.Palette.RainbowPalette;
+import com.themarpe.openthermalcamera.Palette.ThermalPalette;
+import com.themarpe.openthermalcamera.Palette.WhiteHotPalette;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PaletteLookupTest {
+
+    private static final double MIN = 10.0, MAX = 40.0;
+
+    private static int gray(int color){
+        return color & 0xFF;
+    }
+
+    //per pixel gray level as WhiteHot computed it before the lookup table
+    private static int legacyWhiteLevel(double temperature){
+        double tempPercent = (temperature - MIN) / (MAX - MIN);
+        if(tempPercent > 1.0) tempPercent = 1.0;
+        else if(tempPercent < 0.0) tempPercent = 0.0;
+        return (int) Math.round(tempPercent * 255);
+    }
+
+    private static double[] createTemperatures(){
+        Random random = new Random(3);
+        double[] temperatures = new double[OTC.IR_WIDTH * OTC.IR_HEIGHT];
+        for(int i = 0; i < temperatures.length; i++){
+            temperatures[i] = MIN - 5 + random.nextDouble() * (MAX - MIN + 10);
+        }
+        return temperatures;
+    }
+
+    @Test
+    public void bulkMatchesSingle() {
+        double[] temperatures = createTemperatures();
+        int[] colors = new int[temperatures.length];
+        for(ThermalPalette palette : new ThermalPalette[]{new RainbowPalette(), new WhiteHotPalette(), new DarkHotPalette()}){
+            palette.temperaturesToColors(temperatures, 0, temperatures.length, MIN, MAX, colors, 0);
+            for(int i = 0; i < temperatures.length; i++){
+                assertEquals(palette.temperatureToColor(temperatures[i], MIN, MAX), colors[i]);
+            }
+        }
+    }
+
+    @Test
+    public void grayLevelsWithinOneStep() {
+        ThermalPalette whiteHot = new WhiteHotPalette();
+        ThermalPalette darkHot = new DarkHotPalette();
+        for(double t : createTemperatures()){
+            int level = legacyWhiteLevel(t);
+            assertTrue(Math.abs(gray(whiteHot.temperatureToColor(t, MIN, MAX)) - level) <= 1);
+            assertTrue(Math.abs(gray(darkHot.temperatureToColor(t, MIN, MAX)) - (255 - level)) <= 1);
+        }
+        assertEquals(0xFFFFFFFF, whiteHot.temperatureToColor(MAX, MIN, MAX));
+        assertEquals(0xFF000000, whiteHot.temperatureToColor(MIN, MIN, MAX));
+    }
+
+    @Test
+    public void lookupRoundsLikeLookupPosition() {
+        ThermalPalette palette = new RainbowPalette();
+        double step = (MAX - MIN) / (ThermalPalette.LOOKUP_TABLE_SIZE - 1);
+        for(double t : createTemperatures()){
+            int position = ThermalPalette.getLookupPosition(t, MIN, MAX);
+            int clamped = Math.max(0, Math.min(ThermalPalette.LOOKUP_TABLE_SIZE - 1, position));
+            assertEquals(palette.temperatureToColor(MIN + clamped * step, MIN, MAX), palette.temperatureToColor(t, MIN, MAX));
+        }
+        //halfway between two entries rounds up, below the range the lookup is clamped to the first entry
+        assertEquals(1, ThermalPalette.getLookupPosition(MIN + 0.5 * step, MIN, MAX));
+        assertEquals(-1, ThermalPalette.getLookupPosition(MIN - 0.75 * step, MIN, MAX));
+        assertEquals(palette.temperatureToColor(MIN, MIN, MAX), palette.temperatureToColor(MIN - 0.75 * step, MIN, MAX));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Both coefficient layouts of MLX90640 must give identical results,
+ * timings are measured on the device (see androidTest PixelLayoutBenchmark).
+ */
+public class PixelLayoutTest {
+
+    private void checkSameResult(boolean singlePrecision, boolean rawIntensity){
+        SyntheticSensor sensor = new SyntheticSensor(11);
+        double[] scene = SyntheticSensor.createScene(-20, 200, 3);
+        MLX90640 interleaved = new MLX90640();
+        interleaved.setSinglePrecision(singlePrecision);
+        MLX90640 separate = new MLX90640();
+        separate.setSinglePrecision(singlePrecision);
+        separate.setInterleavedCoefficients(false);
+
+        double[] expected = new double[768];
+        double[] actual = new double[768];
+        for(boolean chess : new boolean[]{true, false}){
+            for(int subPage = 0; subPage < 2; subPage++){
+                int[] frame = sensor.createFrame(scene, subPage, chess, 30, 0.95, 17);
+                if(rawIntensity){
+                    interleaved.GetImage(frame, sensor.params, expected);
+                    separate.GetImage(frame, sensor.params, actual);
+                } else {
+                    interleaved.CalculateTo(frame, sensor.params, 0.95, 17, expected);
+                    separate.CalculateTo(frame, sensor.params, 0.95, 17, actual);
+                }
+                for(int p = 0; p < 768; p++){
+                    assertEquals(expected[p], actual[p], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculateToSameResult(){
+        checkSameResult(false, false);
+    }
+
+    @Test
+    public void calculateToSinglePrecisionSameResult(){
+        checkSameResult(true, false);
+    }
+
+    @Test
+    public void getImageSameResult(){
+        checkSameResult(false, true);
+        checkSameResult(true, true);
+    }
+
+}
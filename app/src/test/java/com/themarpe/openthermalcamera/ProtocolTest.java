@@ -0,0 +1,222 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocolTest {
+
+    //COBS encoded response message including delimiter, as sent by the device
+    private static byte[] encodeResponse(int responseCode, int dataCode, byte[] data){
+        byte[] message = new byte[Protocol.RESPONSE_HEADER_SIZE + data.length];
+        message[0] = (byte) responseCode;
+        message[1] = (byte) dataCode;
+        message[2] = (byte) (data.length >> 8);
+        message[3] = (byte) data.length;
+        System.arraycopy(data, 0, message, Protocol.RESPONSE_HEADER_SIZE, data.length);
+
+        byte[] encoded = new byte[Cobs.encodeDstBufMaxLen(message.length) + 1];
+        Cobs.EncodeResult result = new Cobs.EncodeResult();
+        Cobs.encode(encoded, 0, encoded.length - 1, message, 0, message.length, result);
+        byte[] withDelimiter = new byte[result.outLen + 1];
+        System.arraycopy(encoded, 0, withDelimiter, 0, result.outLen);
+        return withDelimiter;
+    }
+
+    //takes every response out of the queue as it arrives
+    private static class Responses implements Protocol.IResponseListener {
+        final List<Protocol.RspStruct> received = new ArrayList<>();
+
+        @Override
+        public void onResponse(Queue<Protocol.RspStruct> q){
+            while(!q.isEmpty()){
+                received.add(q.poll());
+            }
+        }
+    }
+
+    @Test
+    public void releasedResponseIsReused(){
+        Responses responses = new Responses();
+        Protocol protocol = new Protocol(null, responses);
+
+        protocol.handleNewData(encodeResponse(Protocol.RSP_GET_FRAME_DATA, 1, new byte[]{1, 2, 3, 4}));
+        Protocol.RspStruct first = responses.received.get(0);
+        assertEquals(Protocol.RSP_GET_FRAME_DATA, first.responseCode);
+        assertEquals(4, first.dataLength);
+        protocol.releaseResponse(first);
+
+        protocol.handleNewData(encodeResponse(Protocol.RSP_PING, 0, new byte[]{5, 6}));
+        Protocol.RspStruct second = responses.received.get(1);
+        assertSame(first, second);
+        assertEquals(Protocol.RSP_PING, second.responseCode);
+        assertEquals(0, second.dataCode);
+        assertEquals(2, second.dataLength);
+        assertEquals(5, second.data[0]);
+        assertEquals(6, second.data[1]);
+
+        //not released, next response needs a new one
+        protocol.handleNewData(encodeResponse(Protocol.RSP_PING, 0, new byte[0]));
+        assertNotSame(second, responses.received.get(2));
+    }
+
+    @Test
+    public void obtainResetsResponse(){
+        Protocol.ResponsePool pool = new Protocol.ResponsePool();
+
+        Protocol.RspStruct rsp = pool.obtain(16);
+        rsp.responseCode = Protocol.RSP_DUMP_EE;
+        rsp.dataCode = 3;
+        pool.release(rsp);
+
+        Protocol.RspStruct reused = pool.obtain(4);
+        assertSame(rsp, reused);
+        assertEquals(Protocol.NO_RESPONSE, reused.responseCode);
+        assertEquals(0, reused.dataCode);
+        assertEquals(4, reused.dataLength);
+        //payload array is kept when large enough, grown otherwise
+        assertEquals(16, reused.data.length);
+        pool.release(reused);
+        assertTrue(pool.obtain(32).data.length >= 32);
+    }
+
+    @Test
+    public void poolIsCapped(){
+        Protocol.ResponsePool pool = new Protocol.ResponsePool();
+        int count = Protocol.ResponsePool.MAX_POOLED + 2;
+
+        List<Protocol.RspStruct> released = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            released.add(pool.obtain(0));
+        }
+        for(Protocol.RspStruct rsp : released){
+            pool.release(rsp);
+        }
+        //releasing twice doesn't pool the same response twice
+        pool.release(released.get(0));
+
+        List<Protocol.RspStruct> obtained = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            obtained.add(pool.obtain(0));
+        }
+        for(int i = 0; i < Protocol.ResponsePool.MAX_POOLED; i++){
+            assertSame(released.get(i), obtained.get(i));
+        }
+        for(int i = Protocol.ResponsePool.MAX_POOLED; i < count; i++){
+            assertTrue(!released.contains(obtained.get(i)));
+        }
+    }
+
+    @Test
+    public void decodesUnsignedBigEndianWords(){
+        byte[] src = {9, 9, 0x12, 0x34, (byte) 0xFF, (byte) 0xFF, (byte) 0x80, 0x00, 0x00, 0x01};
+        int[] words = new int[4];
+        Protocol.decodeWords(src, 2, words, 4);
+        assertArrayEquals(new int[]{0x1234, 0xFFFF, 0x8000, 0x0001}, words);
+    }
+
+    @Test
+    public void wordsDecodedOncePerResponse(){
+        Protocol.ResponsePool pool = new Protocol.ResponsePool();
+
+        Protocol.RspStruct rsp = pool.obtain(4);
+        System.arraycopy(new byte[]{0x01, 0x02, (byte) 0xAB, (byte) 0xCD}, 0, rsp.data, 0, 4);
+        int[] words = rsp.getWords();
+        assertEquals(2, rsp.getWordCount());
+        assertEquals(0x0102, words[0]);
+        assertEquals(0xABCD, words[1]);
+
+        //words are cached until the response is obtained again
+        rsp.data[0] = 0x7F;
+        assertSame(words, rsp.getWords());
+        assertEquals(0x0102, rsp.getWords()[0]);
+
+        pool.release(rsp);
+        Protocol.RspStruct reused = pool.obtain(2);
+        assertSame(rsp, reused);
+        assertEquals(1, reused.getWordCount());
+        assertEquals(0x7F02, reused.getWords()[0]);
+    }
+
+    private static byte[] encodeUncached(Protocol protocol, int commandCode, byte[] data){
+        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
+        cmd.commandCode = commandCode;
+        cmd.dataLength = data.length;
+        cmd.data = data;
+        return protocol.encodeCommand(cmd);
+    }
+
+    @Test
+    public void cachedCommandsMatchEncodeCommand(){
+        Protocol protocol = new Protocol(null, null);
+        for(int commandCode = Protocol.CMD_PING; commandCode <= Protocol.CMD_JUMP_TO_BOOTLOADER; commandCode++){
+            byte[] cached = protocol.getEncodedCommand(commandCode);
+            assertArrayEquals(encodeUncached(protocol, commandCode, new byte[0]), cached);
+            assertSame(cached, protocol.getEncodedCommand(commandCode));
+
+            //every value, including 0x00 which COBS has to escape
+            for(int value = 0; value < 256; value++){
+                cached = protocol.getEncodedCommand(commandCode, value);
+                assertArrayEquals(encodeUncached(protocol, commandCode, new byte[]{(byte) value}), cached);
+                assertSame(cached, protocol.getEncodedCommand(commandCode, value));
+            }
+        }
+    }
+
+    @Test
+    public void batchSendsConcatenatedCommandsOnce(){
+        List<byte[]> sent = new ArrayList<>();
+        Protocol protocol = new Protocol(sent::add, null);
+
+        byte[] data = new byte[300];
+        for(int i = 0; i < data.length; i++){
+            data[i] = (byte) i;
+        }
+        Protocol.CmdStruct cmd = new Protocol.CmdStruct();
+        cmd.commandCode = Protocol.CMD_SET_MODE;
+        cmd.dataLength = data.length;
+        cmd.data = data;
+
+        Protocol.CommandBatch batch = protocol.newBatch();
+        batch.add(Protocol.CMD_SET_REFRESH_RATE, Protocol.RefreshRate.HZ_8.getValue())
+                .add(Protocol.CMD_SET_MODE, 0)
+                .add(cmd)
+                .add(Protocol.CMD_GET_FRAME_DATA);
+        batch.send();
+
+        List<byte[]> expected = new ArrayList<>();
+        expected.add(encodeUncached(protocol, Protocol.CMD_SET_REFRESH_RATE, new byte[]{(byte) Protocol.RefreshRate.HZ_8.getValue()}));
+        expected.add(encodeUncached(protocol, Protocol.CMD_SET_MODE, new byte[]{0}));
+        expected.add(encodeUncached(protocol, Protocol.CMD_SET_MODE, data));
+        expected.add(encodeUncached(protocol, Protocol.CMD_GET_FRAME_DATA, new byte[0]));
+        int length = 0;
+        for(byte[] encoded : expected){
+            length += encoded.length;
+        }
+        byte[] concatenated = new byte[length];
+        int offset = 0;
+        for(byte[] encoded : expected){
+            System.arraycopy(encoded, 0, concatenated, offset, encoded.length);
+            offset += encoded.length;
+        }
+
+        assertEquals(1, sent.size());
+        assertArrayEquals(concatenated, sent.get(0));
+
+        //batch is empty after sending
+        batch.send();
+        assertEquals(1, sent.size());
+        batch.add(Protocol.CMD_PING).send();
+        assertEquals(2, sent.size());
+        assertArrayEquals(protocol.getEncodedCommand(Protocol.CMD_PING), sent.get(1));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * GetImage (RAW_INTENSITY pipeline) must stay linear in the raw pixel data,
+ * equal raw steps give equal, positive intensity steps.
+ */
+public class RawIntensityTest {
+
+    private static final int STEP = 100;
+
+    private static double[] getImage(MLX90640 mlx, SyntheticSensor sensor, int[] frame, int rawOffset){
+        int[] shifted = frame.clone();
+        for(int p = 0; p < 768; p++){
+            shifted[p] = (shifted[p] + rawOffset) & 0xFFFF;
+        }
+        double[] result = new double[768];
+        mlx.GetImage(shifted, sensor.params, result);
+        return result;
+    }
+
+    private void checkLinear(boolean singlePrecision, boolean chessMode, double tolerance){
+        SyntheticSensor sensor = new SyntheticSensor(10);
+        double[] scene = SyntheticSensor.createScene(20, 150, 2);
+        MLX90640 mlx = new MLX90640();
+        mlx.setSinglePrecision(singlePrecision);
+
+        for(int subPage = 0; subPage < 2; subPage++){
+            int[] frame = sensor.createFrame(scene, subPage, chessMode, 25, 0.95, 17);
+            double[] base = getImage(mlx, sensor, frame, 0);
+            double[] once = getImage(mlx, sensor, frame, STEP);
+            double[] twice = getImage(mlx, sensor, frame, 2 * STEP);
+
+            int checked = 0;
+            for(int p = 0; p < 768; p++){
+                double step = once[p] - base[p];
+                if(step == 0){
+                    //pixel of other subpage
+                    continue;
+                }
+                assertTrue(step > 0);
+                assertEquals(step, twice[p] - once[p], Math.abs(step) * tolerance);
+                checked++;
+            }
+            assertEquals(384, checked);
+        }
+    }
+
+    @Test
+    public void linearInRawDataInterleaved() {
+        checkLinear(false, false, 1e-9);
+    }
+
+    @Test
+    public void linearInRawDataChess() {
+        checkLinear(false, true, 1e-9);
+    }
+
+    @Test
+    public void linearInRawDataSinglePrecision() {
+        checkLinear(true, false, 1e-3);
+    }
+
+}
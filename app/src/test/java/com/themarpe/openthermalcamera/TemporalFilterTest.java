@@ -0,0 +1,56 @@
+package com.themarpe.openthermalcamera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TemporalFilterTest {
+
+    @Test
+    public void reducesNoise() {
+        TemporalFilter filter = new TemporalFilter(768);
+        filter.setStrength(0.8);
+        int[] pixels = MLX90640.SUBPAGE_PIXELS[1][0];
+        Random random = new Random(1);
+        double[] data = new double[768];
+
+        double sumSquaresRaw = 0, sumSquaresFiltered = 0;
+        int samples = 0;
+        for(int frame = 0; frame < 500; frame++){
+            for(int p : pixels){
+                data[p] = 30 + random.nextGaussian() * 0.3;
+            }
+            double raw = data[pixels[0]];
+            filter.apply(data, pixels);
+            if(frame >= 50){
+                sumSquaresRaw += (raw - 30) * (raw - 30);
+                sumSquaresFiltered += (data[pixels[0]] - 30) * (data[pixels[0]] - 30);
+                samples++;
+            }
+        }
+        double rawNoise = Math.sqrt(sumSquaresRaw / samples);
+        double filteredNoise = Math.sqrt(sumSquaresFiltered / samples);
+        assertTrue(filteredNoise < rawNoise / 2);
+    }
+
+    @Test
+    public void resetsOnMotion() {
+        TemporalFilter filter = new TemporalFilter(768);
+        filter.setStrength(0.9);
+        int[] pixels = MLX90640.SUBPAGE_PIXELS[1][1];
+        double[] data = new double[768];
+
+        for(int frame = 0; frame < 10; frame++){
+            for(int p : pixels) data[p] = 25;
+            filter.apply(data, pixels);
+        }
+        //hand moves into view
+        for(int p : pixels) data[p] = 34;
+        filter.apply(data, pixels);
+        assertEquals(34, data[pixels[0]], 0);
+    }
+
+}
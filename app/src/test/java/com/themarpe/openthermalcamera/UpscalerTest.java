@@ -0,0 +1,123 @@
+package com.themarpe.openthermalcamera;
+
+import com.themarpe.openthermalcamera.Palette.RainbowPalette;
+import com.themarpe.openthermalcamera.Palette.ThermalPalette;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UpscalerTest {
+
+    private static final int WIDTH = OTC.IR_WIDTH, HEIGHT = OTC.IR_HEIGHT;
+
+    //color is the lookup position, so rendered colors read back as temperatures 0 to LOOKUP_TABLE_SIZE - 1
+    private static class PositionPalette extends ThermalPalette {
+        @Override
+        public double getDefaultMinTemperature(){
+            return 0;
+        }
+
+        @Override
+        public double getDefaultMaxTemperature(){
+            return LOOKUP_TABLE_SIZE - 1;
+        }
+
+        @Override
+        protected int fractionToColor(double fraction){
+            return (int) Math.round(fraction * (LOOKUP_TABLE_SIZE - 1));
+        }
+    }
+
+    private static int[] render(Upscaler upscaler, double[][] scene){
+        int[] colors = new int[upscaler.getOutputWidth() * upscaler.getOutputHeight()];
+        assertTrue(upscaler.render(scene, new PositionPalette(), 0, ThermalPalette.LOOKUP_TABLE_SIZE - 1, colors));
+        return colors;
+    }
+
+    private static double[][] createScene(long seed){
+        Random random = new Random(seed);
+        double[][] scene = new double[HEIGHT][WIDTH];
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                scene[y][x] = 20 + 10 * Math.sin(x * 0.3) * Math.cos(y * 0.2) + random.nextGaussian() * 0.2;
+            }
+        }
+        return scene;
+    }
+
+    @Test
+    public void keepsConstantField() {
+        double[][] scene = new double[HEIGHT][WIDTH];
+        for(double[] row : scene) java.util.Arrays.fill(row, 25.0);
+
+        for(Upscaler.Mode mode : Upscaler.Mode.values()){
+            for(int color : render(new Upscaler(mode, 8, WIDTH, HEIGHT), scene)){
+                assertEquals(25, color);
+            }
+        }
+    }
+
+    @Test
+    public void reproducesLinearGradient() {
+        int factor = 8;
+        double[][] scene = new double[HEIGHT][WIDTH];
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                scene[y][x] = 20 * x + 10 * y;
+            }
+        }
+
+        for(Upscaler.Mode mode : new Upscaler.Mode[]{Upscaler.Mode.BILINEAR, Upscaler.Mode.BICUBIC}){
+            Upscaler upscaler = new Upscaler(mode, factor, WIDTH, HEIGHT);
+            int outputWidth = upscaler.getOutputWidth();
+            int[] colors = render(upscaler, scene);
+
+            //away from the repeated edge pixels
+            for(int y = 2 * factor; y < (HEIGHT - 2) * factor; y++){
+                for(int x = 2 * factor; x < (WIDTH - 2) * factor; x++){
+                    double sourceX = (x + 0.5) / factor - 0.5;
+                    double sourceY = (y + 0.5) / factor - 0.5;
+                    //rounded to the lookup table, exact halves may round either way
+                    assertEquals(20 * sourceX + 10 * sourceY, colors[y * outputWidth + x], 0.5 + 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        double[][] scene = createScene(4);
+        ThermalPalette palette = new RainbowPalette();
+
+        Upscaler sequential = new Upscaler(Upscaler.Mode.BICUBIC, 16, WIDTH, HEIGHT);
+        sequential.setParallelism(1);
+        Upscaler parallel = new Upscaler(Upscaler.Mode.BICUBIC, 16, WIDTH, HEIGHT);
+        parallel.setParallelism(4);
+
+        int size = sequential.getOutputWidth() * sequential.getOutputHeight();
+        int[] sequentialColors = new int[size], parallelColors = new int[size];
+        sequential.render(scene, palette, 10, 30, sequentialColors);
+        parallel.render(scene, palette, 10, 30, parallelColors);
+        assertArrayEquals(sequentialColors, parallelColors);
+    }
+
+    @Test
+    public void reportsInterruption() {
+        Upscaler upscaler = new Upscaler(Upscaler.Mode.BILINEAR, 4, WIDTH, HEIGHT);
+        upscaler.setParallelism(4);
+        int[] colors = new int[upscaler.getOutputWidth() * upscaler.getOutputHeight()];
+
+        Thread.currentThread().interrupt();
+        boolean complete = upscaler.render(createScene(5), new RainbowPalette(), 10, 30, colors);
+        //interrupt stays set for the caller
+        assertTrue(Thread.interrupted());
+        assertFalse(complete);
+    }
+
+}